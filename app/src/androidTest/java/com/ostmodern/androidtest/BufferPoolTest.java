@@ -0,0 +1,107 @@
+package com.ostmodern.androidtest;
+
+import android.os.Debug;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Checks the pooled read path keeps allocation per request within budget
+ */
+@SuppressWarnings("deprecation")
+public class BufferPoolTest extends TestCase {
+
+    // Bigger than the 256K size class, like a whole episodes feed
+    private static final int RESPONSE_SIZE = 768 * 1024;
+    private static final int REQUESTS = 50;
+
+    // Reading into warm pooled buffers should only cost the small PooledBuffer wrapper
+    private static final long READ_BUDGET_PER_REQUEST = 512;
+
+    // Decoding costs the characters themselves, allow the string plus one scratch copy and a little slack
+    private static final long DECODE_BUDGET_PER_REQUEST = 4 * RESPONSE_SIZE + 4 * 1024;
+
+    private BufferPool mPool;
+    private ByteArrayInputStream mResponse;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPool = new BufferPool();
+        byte[] response = new byte[RESPONSE_SIZE];
+        Arrays.fill(response, (byte) 'a');
+        mResponse = new ByteArrayInputStream(response);
+
+        // Warm up so every size class the read path needs has an idle buffer
+        readResponse(false, -1);
+    }
+
+    public void testReadAllocationPerRequestStaysWithinBudget() throws IOException {
+        long allocatedPerRequest = measureAllocationPerRequest(false, -1);
+        assertTrue("Allocated " + allocatedPerRequest + " bytes per read",
+                allocatedPerRequest <= READ_BUDGET_PER_REQUEST);
+    }
+
+    public void testPresizedReadAllocationPerRequestStaysWithinBudget() throws IOException {
+        long allocatedPerRequest = measureAllocationPerRequest(false, RESPONSE_SIZE);
+        assertTrue("Allocated " + allocatedPerRequest + " bytes per presized read",
+                allocatedPerRequest <= READ_BUDGET_PER_REQUEST);
+    }
+
+    public void testPresizedReadDoesNotGrow() throws IOException {
+        mResponse.reset();
+        PooledBuffer buffer = PooledBuffer.readFully(mResponse, mPool, RESPONSE_SIZE);
+        try {
+            assertEquals(RESPONSE_SIZE, buffer.length());
+            // The smallest size class that fits, not a doubled copy
+            assertEquals(1024 * 1024, buffer.bytes().length);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    public void testDecodeAllocationPerRequestStaysWithinBudget() throws IOException {
+        long allocatedPerRequest = measureAllocationPerRequest(true, -1);
+        assertTrue("Allocated " + allocatedPerRequest + " bytes per read and decode",
+                allocatedPerRequest <= DECODE_BUDGET_PER_REQUEST);
+    }
+
+    public void testCharsetIsTakenFromContentType() {
+        assertEquals(Charset.forName("ISO-8859-1"),
+                HttpUtil.charsetFor("application/json; charset=\"ISO-8859-1\""));
+        assertEquals(HttpUtil.DEFAULT_CHARSET, HttpUtil.charsetFor("application/json"));
+        assertEquals(HttpUtil.DEFAULT_CHARSET, HttpUtil.charsetFor("application/json; charset=not-a-charset"));
+        assertEquals(HttpUtil.DEFAULT_CHARSET, HttpUtil.charsetFor(null));
+    }
+
+    // Count every byte this thread allocates across the requests, not just what the pool reports
+    private long measureAllocationPerRequest(boolean decode, int expectedLength) throws IOException {
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocSize();
+            for (int request = 0; request < REQUESTS; request++) {
+                readResponse(decode, expectedLength);
+            }
+            return Debug.getThreadAllocSize() / REQUESTS;
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    private void readResponse(boolean decode, int expectedLength) throws IOException {
+        mResponse.reset();
+        PooledBuffer buffer = PooledBuffer.readFully(mResponse, mPool, expectedLength);
+        if (decode) {
+            buffer.decode(HttpUtil.DEFAULT_CHARSET);
+        }
+        int length = buffer.length();
+        buffer.release();
+        if (length != RESPONSE_SIZE) {
+            throw new IOException("Read " + length + " bytes");
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.ostmodern.androidtest;
+
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes an index and reads it back through the memory mapped lookup
+ */
+public class EpisodeIndexTest extends AndroidTestCase {
+
+    private File mFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFile = new File(getContext().getCacheDir(), "test-episodes.idx");
+        mFile.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFile.delete();
+        super.tearDown();
+    }
+
+    public void testFindsEveryWrittenEpisode() {
+        List<Item> items = new ArrayList<>();
+        for (int index = 0; index < 100; index++) {
+            items.add(item("uid-" + index, "Title " + index, "Series", "http://example.com/" + index, index));
+        }
+        EpisodeIndex.write(mFile, items);
+
+        EpisodeIndex index = EpisodeIndex.open(mFile);
+        assertNotNull(index);
+        for (Item item : items) {
+            assertSameItem(item, index.find(item.getUid()));
+        }
+    }
+
+    public void testMissReturnsNull() {
+        EpisodeIndex.write(mFile, Arrays.asList(item("uid-1", "Title", null, null, 0)));
+
+        EpisodeIndex index = EpisodeIndex.open(mFile);
+        assertNotNull(index);
+        assertNull(index.find("uid-2"));
+        assertNull(index.find(""));
+    }
+
+    public void testCollidingHashesAreBothFound() {
+        // "Aa" and "BB" have the same String.hashCode, so they probe the same slot
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        Item first = item("Aa", "First", null, null, 1);
+        Item second = item("BB", "Second", null, null, 2);
+        EpisodeIndex.write(mFile, Arrays.asList(first, second));
+
+        EpisodeIndex index = EpisodeIndex.open(mFile);
+        assertNotNull(index);
+        assertSameItem(first, index.find("Aa"));
+        assertSameItem(second, index.find("BB"));
+        assertNull(index.find("C#"));
+    }
+
+    public void testNullFieldsRoundTrip() {
+        Item item = item("uid-1", null, null, null, 0);
+        EpisodeIndex.write(mFile, Arrays.asList(item));
+
+        EpisodeIndex index = EpisodeIndex.open(mFile);
+        assertNotNull(index);
+        assertSameItem(item, index.find("uid-1"));
+    }
+
+    public void testGetReopensAfterRewrite() {
+        EpisodeIndex.write(mFile, Arrays.asList(item("uid-1", "Before", null, null, 1)));
+        EpisodeIndex before = EpisodeIndex.get(mFile);
+        assertNotNull(before);
+        assertEquals("Before", before.find("uid-1").getTitle());
+
+        // Rewritten well within the same second, so the file timestamp alone can't tell them apart
+        EpisodeIndex.write(mFile, Arrays.asList(
+                item("uid-1", "After", null, null, 1), item("uid-2", "Added", null, null, 2)));
+        EpisodeIndex after = EpisodeIndex.get(mFile);
+        assertNotNull(after);
+        assertEquals("After", after.find("uid-1").getTitle());
+        assertEquals("Added", after.find("uid-2").getTitle());
+
+        // Nothing changed, so the open index is reused
+        assertSame(after, EpisodeIndex.get(mFile));
+    }
+
+    public void testShortFileIsNoIndex() throws IOException {
+        writeBytes(new byte[]{0x4F, 0x53});
+        assertNull(EpisodeIndex.open(mFile));
+
+        writeBytes(new byte[0]);
+        assertNull(EpisodeIndex.open(mFile));
+    }
+
+    public void testTruncatedSlotTableIsNoIndex() throws IOException {
+        List<Item> items = new ArrayList<>();
+        for (int index = 0; index < 10; index++) {
+            items.add(item("uid-" + index, "Title", null, null, index));
+        }
+        EpisodeIndex.write(mFile, items);
+
+        // Keep the header but cut the file off part way through the slots
+        byte[] truncated = new byte[24];
+        FileInputStream inputStream = new FileInputStream(mFile);
+        try {
+            assertEquals(truncated.length, inputStream.read(truncated));
+        } finally {
+            inputStream.close();
+        }
+        writeBytes(truncated);
+        assertNull(EpisodeIndex.open(mFile));
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(mFile);
+        try {
+            outputStream.write(bytes);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private static Item item(String uid, String title, String series, String image, long broadcastDate) {
+        Item item = new Item();
+        item.setUid(uid);
+        item.setTitle(title);
+        item.setSeries(series);
+        item.setTempImage(image);
+        item.setBroadcastDate(broadcastDate);
+        return item;
+    }
+
+    private static void assertSameItem(Item expected, Item actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getUid(), actual.getUid());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getSeries(), actual.getSeries());
+        assertEquals(expected.getTempImage(), actual.getTempImage());
+        assertEquals(expected.getBroadcastDate(), actual.getBroadcastDate());
+    }
+}
@@ -0,0 +1,166 @@
+package com.ostmodern.androidtest;
+
+import junit.framework.TestCase;
+
+import org.json.JSONException;
+
+import java.nio.charset.Charset;
+
+/**
+ * Checks the byte level scanner reads the requested fields and steps over everything else
+ */
+public class JsonScannerTest extends TestCase {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final FieldProjection FIELDS = new FieldProjection("uid", "title");
+
+    public void testDecodesEscapes() throws JSONException {
+        JsonScanner scanner = scanner("[\"a\\\"b\\\\c\\/d\\n\\t\", \"caf\\u00e9\", \"\\uD83D\\uDE00\", \"caf\u00e9\"]");
+        scanner.beginArray();
+        assertTrue(scanner.hasNext());
+        assertEquals("a\"b\\c/d\n\t", scanner.nextString());
+        assertTrue(scanner.hasNext());
+        assertEquals("caf\u00e9", scanner.nextString());
+        assertTrue(scanner.hasNext());
+        // Surrogate pair escapes combine into the one character
+        assertEquals(new String(Character.toChars(0x1F600)), scanner.nextString());
+        assertTrue(scanner.hasNext());
+        assertEquals("caf\u00e9", scanner.nextString());
+        assertFalse(scanner.hasNext());
+        scanner.endArray();
+    }
+
+    public void testSkipsNestedContainersWithBracketsInStrings() throws JSONException {
+        JsonScanner scanner = scanner("{\"meta\": {\"a\": [1, {\"b\": \"]}\"}], \"c\": \"\\\"}\"}, \"uid\": \"x\"}");
+        scanner.beginObject();
+        assertTrue(scanner.hasNext());
+        assertNull(scanner.nextName(FIELDS));
+        scanner.skipValue();
+        assertTrue(scanner.hasNext());
+        assertEquals("uid", scanner.nextName(FIELDS));
+        assertEquals("x", scanner.nextString());
+        assertFalse(scanner.hasNext());
+        scanner.endObject();
+    }
+
+    public void testReadsEmptyContainers() throws JSONException {
+        JsonScanner scanner = scanner("{\"uid\": [], \"title\": {}}");
+        scanner.beginObject();
+        assertTrue(scanner.hasNext());
+        assertEquals("uid", scanner.nextName(FIELDS));
+        assertTrue(scanner.nextIsArray());
+        scanner.beginArray();
+        assertFalse(scanner.hasNext());
+        scanner.endArray();
+        assertTrue(scanner.hasNext());
+        assertEquals("title", scanner.nextName(FIELDS));
+        scanner.beginObject();
+        assertFalse(scanner.hasNext());
+        scanner.endObject();
+        assertFalse(scanner.hasNext());
+        scanner.endObject();
+    }
+
+    public void testReadsNulls() throws JSONException {
+        JsonScanner scanner = scanner("[null, null, \"a\", null]");
+        scanner.beginArray();
+        assertTrue(scanner.hasNext());
+        assertNull(scanner.nextString());
+        assertTrue(scanner.hasNext());
+        assertTrue(scanner.nextNull());
+        assertTrue(scanner.hasNext());
+        assertFalse(scanner.nextNull());
+        assertEquals("a", scanner.nextString());
+        assertTrue(scanner.hasNext());
+        scanner.skipValue();
+        assertFalse(scanner.hasNext());
+        scanner.endArray();
+    }
+
+    public void testOptStringSkipsOtherTypes() throws JSONException {
+        JsonScanner scanner = scanner("[12.5, true, [\"a\"], {\"b\": 1}, \"c\"]");
+        scanner.beginArray();
+        for (int value = 0; value < 4; value++) {
+            assertTrue(scanner.hasNext());
+            assertNull(scanner.optString());
+        }
+        assertTrue(scanner.hasNext());
+        assertEquals("c", scanner.optString());
+        assertFalse(scanner.hasNext());
+        scanner.endArray();
+    }
+
+    public void testSkipsElementsThatAreNotObjects() throws JSONException {
+        JsonScanner scanner = scanner("[null, {\"uid\": \"a\"}, 3, \"b\", {\"uid\": \"c\"}]");
+        StringBuilder uids = new StringBuilder();
+        scanner.beginArray();
+        while (scanner.hasNext()) {
+            if (!scanner.nextIsObject()) {
+                scanner.skipValue();
+                continue;
+            }
+            scanner.beginObject();
+            while (scanner.hasNext()) {
+                assertEquals("uid", scanner.nextName(FIELDS));
+                uids.append(scanner.optString());
+            }
+            scanner.endObject();
+        }
+        scanner.endArray();
+        assertEquals("ac", uids.toString());
+    }
+
+    public void testTruncatedInputThrows() {
+        assertThrows("{\"uid\": \"abc");
+        assertThrows("{\"meta\": [1, {\"a\": 2}");
+        assertThrows("{\"uid\": \"\\u00");
+        assertThrows("{\"uid\"");
+        assertThrows("[nul");
+    }
+
+    public void testCountsSkippedBytes() throws JSONException {
+        String skippedName = "\"extra\":";
+        String skippedValue = "[1, \"]}\", {\"a\": null}]";
+        JsonScanner scanner = scanner("{\"uid\":\"x\"," + skippedName + skippedValue + ",\"title\":\"t\"}");
+        scanner.beginObject();
+        while (scanner.hasNext()) {
+            if (scanner.nextName(FIELDS) == null) {
+                scanner.skipValue();
+            } else {
+                scanner.nextString();
+            }
+        }
+        scanner.endObject();
+        assertEquals(skippedName.length() + skippedValue.length(), scanner.getSkippedBytes());
+    }
+
+    private void assertThrows(String json) {
+        JsonScanner scanner = scanner(json);
+        try {
+            if (json.startsWith("[")) {
+                scanner.beginArray();
+                scanner.nextString();
+            } else {
+                scanner.beginObject();
+                scanner.hasNext();
+                if (scanner.nextName(FIELDS) == null) {
+                    scanner.skipValue();
+                } else {
+                    scanner.nextString();
+                }
+            }
+            fail("Expected " + json + " to be rejected");
+        } catch (JSONException expected) {
+            // Rejected as it should be
+        }
+    }
+
+    private static JsonScanner scanner(String json) {
+        byte[] bytes = json.getBytes(UTF_8);
+        // Leave spare bytes past the limit like a pooled buffer would
+        byte[] buffer = new byte[bytes.length + 16];
+        System.arraycopy(bytes, 0, buffer, 0, bytes.length);
+        return new JsonScanner(buffer, bytes.length);
+    }
+}
@@ -0,0 +1,133 @@
+package com.ostmodern.androidtest;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks deltas and replacements keep the sorted items in order and showing their latest content.
+ * Each step makes a single change and waits for the snapshot it publishes.
+ */
+public class SortedItemsTest extends TestCase {
+
+    private final BlockingQueue<ItemSnapshot> mSnapshots = new LinkedBlockingQueue<>();
+
+    private SortedItems mSortedItems;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mSortedItems = new SortedItems(new SortedItems.OnSnapshotListener() {
+            @Override
+            public void onSnapshot(ItemSnapshot snapshot) {
+                mSnapshots.add(snapshot);
+            }
+        });
+        mSortedItems.setSortMode(SortMode.TITLE);
+        awaitSnapshot();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mSortedItems.shutdown();
+        super.tearDown();
+    }
+
+    public void testEditKeepingSortKeysShowsNewContent() throws InterruptedException {
+        mSortedItems.replaceItems(Arrays.asList(item("a", "Alpha"), item("b", "Beta")));
+        awaitSnapshot();
+
+        Item edited = item("a", "Alpha");
+        edited.setTempImage("http://example.com/new.jpg");
+        mSortedItems.addItems(Arrays.asList(edited));
+
+        ItemSnapshot snapshot = awaitSnapshot();
+        assertOrder(snapshot, "a", "b");
+        // The sorted set may still hold the old instance, the snapshot must show the new one
+        assertSame(edited, snapshot.getItems().get(0));
+    }
+
+    public void testEditChangingSortKeysMovesItem() throws InterruptedException {
+        mSortedItems.replaceItems(Arrays.asList(item("a", "Alpha"), item("b", "Beta")));
+        awaitSnapshot();
+
+        mSortedItems.addItems(Arrays.asList(item("a", "Zulu")));
+
+        ItemSnapshot snapshot = awaitSnapshot();
+        assertOrder(snapshot, "b", "a");
+        assertEquals("Zulu", snapshot.getItems().get(1).getTitle());
+    }
+
+    public void testUidRepeatedWithinListKeepsOneCopy() throws InterruptedException {
+        mSortedItems.replaceItems(Arrays.asList(item("a", "Alpha"), item("b", "Beta"), item("a", "Zulu")));
+
+        ItemSnapshot snapshot = awaitSnapshot();
+        assertOrder(snapshot, "b", "a");
+        assertEquals("Zulu", snapshot.getItems().get(1).getTitle());
+
+        // The feed order keeps the uid where it first appeared
+        mSortedItems.setSortMode(SortMode.FEED);
+        snapshot = awaitSnapshot();
+        assertOrder(snapshot, "a", "b");
+        assertEquals("Zulu", snapshot.getItems().get(0).getTitle());
+    }
+
+    public void testReplaceDropsMissingItems() throws InterruptedException {
+        mSortedItems.replaceItems(Arrays.asList(item("a", "Alpha"), item("b", "Beta"), item("c", "Charlie")));
+        awaitSnapshot();
+
+        mSortedItems.replaceItems(Arrays.asList(item("c", "Charlie"), item("a", "Alpha")));
+
+        assertOrder(awaitSnapshot(), "a", "c");
+    }
+
+    public void testSwitchingSortModeAfterDeltas() throws InterruptedException {
+        mSortedItems.setSortMode(SortMode.FEED);
+        awaitSnapshot();
+        mSortedItems.replaceItems(Arrays.asList(item("a", "Charlie"), item("b", "Alpha")));
+        awaitSnapshot();
+        mSortedItems.addItems(Arrays.asList(item("c", "Bravo")));
+        awaitSnapshot();
+        mSortedItems.addItems(Arrays.asList(item("a", "Delta")));
+        assertOrder(awaitSnapshot(), "a", "b", "c");
+
+        mSortedItems.setSortMode(SortMode.TITLE);
+        ItemSnapshot snapshot = awaitSnapshot();
+        assertOrder(snapshot, "b", "c", "a");
+        assertEquals("Delta", snapshot.getItems().get(2).getTitle());
+
+        // Edits made while sorted by title carry over when switching back
+        mSortedItems.addItems(Arrays.asList(item("b", "Echo")));
+        assertOrder(awaitSnapshot(), "c", "a", "b");
+        mSortedItems.setSortMode(SortMode.FEED);
+        snapshot = awaitSnapshot();
+        assertOrder(snapshot, "a", "b", "c");
+        assertEquals("Echo", snapshot.getItems().get(1).getTitle());
+    }
+
+    private ItemSnapshot awaitSnapshot() throws InterruptedException {
+        ItemSnapshot snapshot = mSnapshots.poll(5, TimeUnit.SECONDS);
+        assertNotNull("No snapshot published", snapshot);
+        return snapshot;
+    }
+
+    private static void assertOrder(ItemSnapshot snapshot, String... uids) {
+        List<String> actual = new ArrayList<>();
+        for (Item item : snapshot.getItems()) {
+            actual.add(item.getUid());
+        }
+        assertEquals(Arrays.asList(uids), actual);
+    }
+
+    private static Item item(String uid, String title) {
+        Item item = new Item();
+        item.setUid(uid);
+        item.setTitle(title);
+        return item;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import java.util.ArrayDeque;
+
+/**
+ * Shared pool of byte arrays grouped into fixed size classes, so the network
+ * read path and the disk cache can reuse buffers instead of allocating per request
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+public class BufferPool {
+
+    // Size classes handed out by the pool, smallest first. The largest cover a whole episodes feed.
+    private static final int[] SIZE_CLASSES =
+            {4 * 1024, 16 * 1024, 64 * 1024, 256 * 1024, 1024 * 1024, 4 * 1024 * 1024};
+
+    // Maximum number of idle buffers kept per size class
+    private static final int MAX_IDLE_PER_CLASS = 4;
+
+    // Size classes this big only keep one idle buffer, so the pool can't sit on many megabytes
+    private static final int LARGE_CLASS_SIZE = 1024 * 1024;
+
+    private static final BufferPool sInstance = new BufferPool();
+
+    private final ArrayDeque<byte[]>[] mIdleBuffers;
+
+    @SuppressWarnings("unchecked")
+    BufferPool() {
+        mIdleBuffers = new ArrayDeque[SIZE_CLASSES.length];
+        for (int sizeClass = 0; sizeClass < SIZE_CLASSES.length; sizeClass++) {
+            mIdleBuffers[sizeClass] = new ArrayDeque<>(MAX_IDLE_PER_CLASS);
+        }
+    }
+
+    public static BufferPool getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Hand out a buffer of at least the requested size, reusing an idle one when possible
+     *
+     * @param minSize - The minimum number of bytes the caller needs
+     * @return a buffer whose length is the smallest size class that fits, or exactly minSize
+     * if it is larger than every size class
+     */
+    public synchronized byte[] acquire(int minSize) {
+        int sizeClass = sizeClassFor(minSize);
+        if (sizeClass < 0) {
+            // Too big to pool, the caller owns it outright
+            return new byte[minSize];
+        }
+        byte[] buffer = mIdleBuffers[sizeClass].pollFirst();
+        if (buffer == null) {
+            buffer = new byte[SIZE_CLASSES[sizeClass]];
+        }
+        return buffer;
+    }
+
+    /**
+     * Return a buffer to the pool. Buffers that don't match a size class or that would
+     * exceed the idle limit are dropped and left to the garbage collector.
+     *
+     * @param buffer - The buffer previously handed out by {@link #acquire(int)}
+     */
+    public synchronized void release(byte[] buffer) {
+        if (buffer == null) {
+            return;
+        }
+        int sizeClass = sizeClassFor(buffer.length);
+        if (sizeClass >= 0 && SIZE_CLASSES[sizeClass] == buffer.length
+                && mIdleBuffers[sizeClass].size() < maxIdle(buffer.length)) {
+            mIdleBuffers[sizeClass].offerFirst(buffer);
+        }
+    }
+
+    private static int maxIdle(int size) {
+        return size >= LARGE_CLASS_SIZE ? 1 : MAX_IDLE_PER_CLASS;
+    }
+
+    // Index of the smallest size class that can hold size bytes, or -1 if none can
+    private static int sizeClassFor(int size) {
+        for (int sizeClass = 0; sizeClass < SIZE_CLASSES.length; sizeClass++) {
+            if (size <= SIZE_CLASSES[sizeClass]) {
+                return sizeClass;
+            }
+        }
+        return -1;
+    }
+}
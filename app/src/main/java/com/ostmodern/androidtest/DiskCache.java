@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Keeps the last raw response body for a key on disk so it can be
+ * served when the network is not available. Reads and writes go through
+ * {@link BufferPool} like the network read path.
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+public class DiskCache {
+
+    private final String TAG = DiskCache.class.getSimpleName();
+
+    private final File mDirectory;
+    private final BufferPool mPool;
+
+    public DiskCache(File directory, BufferPool pool) {
+        this.mDirectory = directory;
+        this.mPool = pool;
+    }
+
+    /**
+     * Store the response for the key, replacing any previous entry in one step
+     *
+     * @param key      - File name the entry is stored under
+     * @param response - The response to store, still owned by the caller
+     */
+    public void put(String key, final HttpUtil.Response response) {
+        FileReplacer.replace(new File(mDirectory, key), new FileReplacer.Content() {
+            @Override
+            public void writeTo(DataOutputStream outputStream) throws IOException {
+                outputStream.writeUTF(response.getCharset().name());
+                response.getBody().writeTo(outputStream);
+            }
+        });
+    }
+
+    /**
+     * @param key - File name the entry is stored under
+     * @return the cached response, or null if there is none. The caller must release it.
+     */
+    public HttpUtil.Response get(String key) {
+        File entry = new File(mDirectory, key);
+        if (!entry.exists()) {
+            return null;
+        }
+        DataInputStream inputStream = null;
+        try {
+            inputStream = new DataInputStream(new FileInputStream(entry));
+            Charset charset = Charset.forName(inputStream.readUTF());
+            return new HttpUtil.Response(PooledBuffer.readFully(inputStream, mPool), charset);
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Error reading cache entry: " + e.getMessage());
+            return null;
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Error closing stream " + e.getMessage());
+                }
+            }
+        }
+    }
+}
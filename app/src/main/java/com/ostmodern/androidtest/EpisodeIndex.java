@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * On-disk index of the episodes, memory mapped so an episode can be looked up by uid
+ * without loading the whole catalogue into the heap or parsing any JSON.
+ * <p/>
+ * The file is a header, an open addressing hash table of (uid hash, record offset)
+ * slots, then the episode records themselves. It is rebuilt in full on every sync and
+ * swapped in with a rename, so readers only ever see a complete index.
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+public class EpisodeIndex {
+
+    private static final String TAG = EpisodeIndex.class.getSimpleName();
+
+    private static final String INDEX_FILE = "episodes.idx";
+
+    private static final int MAGIC = 0x4F535449;
+    private static final int VERSION = 1;
+
+    // Magic, version, slot count, record count
+    private static final int HEADER_SIZE = 4 * 4;
+    // Uid hash, record offset
+    private static final int SLOT_SIZE = 2 * 4;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Index currently open for reading, reopened when a sync replaces the file
+    private static EpisodeIndex sInstance;
+
+    // Bumped by every write. File timestamps only have whole second precision, so a rebuild
+    // straight after the index was opened could otherwise go unnoticed.
+    private static volatile int sGeneration;
+
+    private final MappedByteBuffer mBuffer;
+    private final File mFile;
+    private final int mGeneration;
+    private final int mSlotCount;
+
+    private EpisodeIndex(MappedByteBuffer buffer, File file, int generation) throws IOException {
+        this.mBuffer = buffer;
+        this.mFile = file;
+        this.mGeneration = generation;
+        // Check the header and table fit before trusting anything in them, a short file is no index
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an episode index");
+        }
+        this.mSlotCount = buffer.getInt(8);
+        if (mSlotCount < 0 || Integer.bitCount(mSlotCount) > 1
+                || buffer.limit() < HEADER_SIZE + (long) mSlotCount * SLOT_SIZE) {
+            throw new IOException("Truncated episode index");
+        }
+    }
+
+    /**
+     * @return the index written by the last sync, or null if there isn't one yet
+     */
+    public static EpisodeIndex get(Context context) {
+        return get(new File(context.getFilesDir(), INDEX_FILE));
+    }
+
+    static synchronized EpisodeIndex get(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        if (sInstance == null || !sInstance.mFile.equals(file) || sInstance.mGeneration != sGeneration) {
+            sInstance = open(file);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Map the file read only, pages are only read in as lookups touch them
+     *
+     * @return the index, or null if the file is missing, short or not an index
+     */
+    static EpisodeIndex open(File file) {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            // Read before mapping, so a write that lands in between makes the next get() reopen
+            int generation = sGeneration;
+            randomAccessFile = new RandomAccessFile(file, "r");
+            FileChannel channel = randomAccessFile.getChannel();
+            // The mapping stays valid after the file is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new EpisodeIndex(buffer, file, generation);
+        } catch (IOException e) {
+            Log.e(TAG, "Error opening index: " + e.getMessage());
+            return null;
+        } finally {
+            if (randomAccessFile != null) {
+                try {
+                    randomAccessFile.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Error closing index " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Look up an episode by uid
+     *
+     * @param uid - The uid of the episode
+     * @return the episode, or null if it isn't in the index
+     */
+    public Item find(String uid) {
+        if (mSlotCount == 0) {
+            return null;
+        }
+        byte[] uidBytes = uid.getBytes(UTF_8);
+        int hash = hash(uid);
+        // Each lookup gets its own view so concurrent lookups don't share a position
+        ByteBuffer buffer = mBuffer.duplicate();
+        int recordsStart = HEADER_SIZE + mSlotCount * SLOT_SIZE;
+
+        try {
+            for (int probe = 0; probe < mSlotCount; probe++) {
+                int slot = HEADER_SIZE + ((hash + probe) & (mSlotCount - 1)) * SLOT_SIZE;
+                int offset = buffer.getInt(slot + 4);
+                if (offset == 0) {
+                    // Empty slot, the uid would have been stored here
+                    return null;
+                }
+                if (offset < recordsStart || offset >= buffer.limit()) {
+                    throw new IndexOutOfBoundsException("Record offset " + offset + " outside the index");
+                }
+                if (buffer.getInt(slot) == hash && uidMatches(buffer, offset, uidBytes)) {
+                    buffer.position(offset);
+                    return readItem(buffer);
+                }
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            // The offsets and lengths come from disk, a corrupt file is treated as a miss
+            Log.e(TAG, "Corrupt index: " + e.getMessage());
+        }
+        return null;
+    }
+
+    // Compare the uid of the record at offset without decoding it
+    private static boolean uidMatches(ByteBuffer buffer, int offset, byte[] uidBytes) {
+        if (buffer.getInt(offset) != uidBytes.length) {
+            return false;
+        }
+        for (int index = 0; index < uidBytes.length; index++) {
+            if (buffer.get(offset + 4 + index) != uidBytes[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Item readItem(ByteBuffer buffer) {
+        Item item = new Item();
+        item.setUid(readString(buffer));
+        item.setTitle(readString(buffer));
+        item.setSeries(readString(buffer));
+        item.setTempImage(readString(buffer));
+        item.setBroadcastDate(buffer.getLong());
+        return item;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Rebuild the index from the given items and swap it in one step
+     *
+     * @param context - Any context, only used to find the files directory
+     * @param items   - Every episode, an empty list leaves the current index in place
+     */
+    public static void write(Context context, List<Item> items) {
+        write(new File(context.getFilesDir(), INDEX_FILE), items);
+    }
+
+    static void write(File file, List<Item> items) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+
+        // Keep the table at most half full so probes stay short
+        final int slotCount = Integer.highestOneBit(items.size() * 2 - 1) << 1;
+        final int[] slotHashes = new int[slotCount];
+        final int[] slotOffsets = new int[slotCount];
+        final int recordCount = items.size();
+        int recordsStart = HEADER_SIZE + slotCount * SLOT_SIZE;
+
+        // Lay out the records first so the slots know where each one starts
+        final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream recordStream = new DataOutputStream(records);
+        try {
+            for (Item item : items) {
+                int hash = hash(item.getUid());
+                int slot = hash & (slotCount - 1);
+                while (slotOffsets[slot] != 0) {
+                    slot = (slot + 1) & (slotCount - 1);
+                }
+                slotHashes[slot] = hash;
+                slotOffsets[slot] = recordsStart + recordStream.size();
+
+                writeString(recordStream, item.getUid());
+                writeString(recordStream, item.getTitle());
+                writeString(recordStream, item.getSeries());
+                writeString(recordStream, item.getTempImage());
+                recordStream.writeLong(item.getBroadcastDate());
+            }
+        } catch (IOException e) {
+            // Writes to memory don't fail
+            Log.e(TAG, "Error laying out index: " + e.getMessage());
+            return;
+        }
+
+        boolean replaced = FileReplacer.replace(file, new FileReplacer.Content() {
+            @Override
+            public void writeTo(DataOutputStream outputStream) throws IOException {
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(VERSION);
+                outputStream.writeInt(slotCount);
+                outputStream.writeInt(recordCount);
+                for (int slot = 0; slot < slotCount; slot++) {
+                    outputStream.writeInt(slotHashes[slot]);
+                    outputStream.writeInt(slotOffsets[slot]);
+                }
+                records.writeTo(outputStream);
+            }
+        });
+        if (replaced) {
+            nextGeneration();
+        }
+    }
+
+    private static synchronized void nextGeneration() {
+        sGeneration++;
+    }
+
+    // Length prefixed UTF-8, -1 for null
+    private static void writeString(DataOutputStream outputStream, String value) throws IOException {
+        if (value == null) {
+            outputStream.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    // Spread the bits of String.hashCode so similar uids don't cluster in the table
+    private static int hash(String uid) {
+        int hash = uid.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+}
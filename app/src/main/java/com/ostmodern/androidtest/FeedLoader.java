@@ -0,0 +1,478 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the episodes together with their sets and images from the Skylark API.
+ * <p/>
+ * Each endpoint is requested and parsed on its own worker from a small shared pool,
+ * so the total time is close to the slowest request rather than the sum of them.
+ * The results are then joined by uid into enriched {@link Item}s. If the sets or
+ * images fail the episodes are still returned, just without the extra fields.
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+class FeedLoader {
+
+    private static final String TAG = FeedLoader.class.getSimpleName();
+
+    // BASE URL to append the endpoint paths onto
+    static final String API_BASE_URL = "http://feature-code-test.skylark-cms.qa.aws.ostmodern.co.uk:8000/api/";
+
+    // One worker per endpoint, shared between loads so threads aren't created per request
+    private static final int ENDPOINT_THREADS = 3;
+    private static final ExecutorService sExecutor = Executors.newFixedThreadPool(ENDPOINT_THREADS);
+
+    // How long to wait for all the endpoints together before giving up on the ones still running
+    private static final long LOAD_TIMEOUT_MILLIS = 30 * 1000;
+
+    // JSON fields that need to be extracted from the responses
+    private static final String OBJECTS = "objects";
+    private static final String UID = "uid";
+    private static final String TITLE = "title";
+    private static final String URL_FIELD = "url";
+    private static final String IMAGE_URLS = "image_urls";
+    private static final String SET_ITEMS = "items";
+    private static final String CONTENT_URL = "content_url";
+    private static final String PUBLISH_ON = "publish_on";
+
+    // The only top level field of a response that is parsed
+    private static final FieldProjection RESPONSE_FIELDS = new FieldProjection(OBJECTS);
+
+    // Dates are ISO 8601 in UTC, only the part up to the seconds is parsed
+    private static final String DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss";
+
+    private final DiskCache mDiskCache;
+
+    // Fields of each episode the screen needs, the rest are left out or skipped
+    private final FieldProjection mEpisodeFields;
+
+    public FeedLoader(DiskCache diskCache, FieldProjection episodeFields) {
+        this.mDiskCache = diskCache;
+        this.mEpisodeFields = episodeFields;
+    }
+
+    /**
+     * Request every endpoint concurrently and join the results, blocks until they have all finished
+     *
+     * @return the enriched episodes, empty if the episodes themselves couldn't be loaded
+     */
+    public Result load() {
+        long start = SystemClock.elapsedRealtime();
+
+        // One deadline shared by every endpoint, so stalled endpoints can't add up their timeouts
+        long deadline = start + LOAD_TIMEOUT_MILLIS;
+        EpisodesRequest episodesRequest = new EpisodesRequest(deadline);
+        SetTitlesRequest setTitlesRequest = new SetTitlesRequest(deadline);
+        ImageUrlsRequest imageUrlsRequest = new ImageUrlsRequest(deadline);
+
+        Future<Episodes> episodesFuture = sExecutor.submit(episodesRequest);
+        Future<Map<String, String>> setTitlesFuture = sExecutor.submit(setTitlesRequest);
+        Future<Map<String, String>> imageUrlsFuture = sExecutor.submit(imageUrlsRequest);
+
+        Episodes episodes = await(episodesRequest, episodesFuture, null);
+        Map<String, String> setTitles = await(setTitlesRequest, setTitlesFuture,
+                Collections.<String, String>emptyMap());
+        Map<String, String> imageUrls = await(imageUrlsRequest, imageUrlsFuture,
+                Collections.<String, String>emptyMap());
+
+        if (episodes == null) {
+            // Nothing to enrich without the episodes
+            return new Result(new ArrayList<Item>(), false);
+        }
+
+        // Join the sets and images onto the episodes by uid
+        for (Item item : episodes.items) {
+            item.setSeries(setTitles.get(item.getUid()));
+            String imageUid = episodes.imageUids.get(item.getUid());
+            if (imageUid != null) {
+                item.setTempImage(imageUrls.get(imageUid));
+            }
+        }
+
+        Log.d(TAG, "Loaded " + episodes.items.size() + " items in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+        return new Result(episodes.items, episodesRequest.isFromNetwork());
+    }
+
+    // Wait for one endpoint until the deadline, falling back to the given value if it failed so the others still count
+    private <T> T await(EndpointRequest<T> request, Future<T> future, T fallback) {
+        try {
+            long remaining = Math.max(0, request.mDeadline - SystemClock.elapsedRealtime());
+            return future.get(remaining, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            Log.e(TAG, "Endpoint failed, continuing with partial results: " + e);
+            // Interrupting doesn't unblock a socket read, so the request disconnects itself as well
+            future.cancel(true);
+            request.cancel();
+            return fallback;
+        }
+    }
+
+    /**
+     * Pull the uid off the end of an api url, e.g. "/api/images/image_1234/" gives "image_1234"
+     */
+    static String uidFromUrl(String url) {
+        int end = url.endsWith("/") ? url.length() - 1 : url.length();
+        return url.substring(url.lastIndexOf('/', end - 1) + 1, end);
+    }
+
+    // The value if it is a string, anything else including JSON null counts as missing rather than being coerced
+    private static String stringOrNull(Object value) {
+        return value instanceof String ? (String) value : null;
+    }
+
+    // Parse an ISO 8601 date into milliseconds, 0 if it is missing or malformed
+    private static long parseDate(SimpleDateFormat dateFormat, String date) {
+        if (date == null || date.length() < DATE_PATTERN.length() - 2) {
+            return 0;
+        }
+        try {
+            // The pattern quotes the 'T', so it is two characters longer than the text it matches
+            return dateFormat.parse(date.substring(0, DATE_PATTERN.length() - 2)).getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Fetches one endpoint, falling back to its last cached response, and parses it on the calling worker
+     */
+    private abstract class EndpointRequest<T> implements Callable<T> {
+
+        private final String mPath;
+        private final String mQuery;
+        private final long mDeadline;
+
+        // Set while the request is in flight so another thread can abort it
+        private volatile HttpURLConnection mConnection;
+        private volatile boolean mCancelled;
+
+        // Whether the result was parsed from a fresh response rather than the disk cache
+        private volatile boolean mFromNetwork;
+
+        EndpointRequest(String path, String query, long deadline) {
+            this.mPath = path;
+            this.mQuery = query;
+            this.mDeadline = deadline;
+        }
+
+        /**
+         * @return whether the result came from a fresh response rather than the disk cache
+         */
+        boolean isFromNetwork() {
+            return mFromNetwork;
+        }
+
+        /**
+         * Abort the request, the disconnect makes a blocked connect or read fail straight away
+         */
+        void cancel() {
+            mCancelled = true;
+            HttpURLConnection connection = mConnection;
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+
+        @Override
+        public T call() throws IOException, JSONException {
+            long start = SystemClock.elapsedRealtime();
+            // The cache entry is named after the endpoint, e.g. "episodes.json"
+            String cacheKey = mPath.replace("/", "") + ".json";
+
+            HttpUtil.Response response = null;
+            try {
+                String url = API_BASE_URL + mPath + (mQuery != null ? "?" + mQuery : "");
+                // Time out with the load rather than waiting on the socket forever and holding up the worker
+                int timeout = (int) Math.max(1, mDeadline - SystemClock.elapsedRealtime());
+                mConnection = HttpUtil.open(new URL(url), timeout);
+                if (mCancelled) {
+                    throw new IOException("Cancelled");
+                }
+                response = HttpUtil.read(mConnection, BufferPool.getInstance());
+            } catch (IOException e) {
+                Log.e(TAG, "Error reading " + mPath + ": " + e.getMessage());
+            } finally {
+                mConnection = null;
+            }
+            if (mCancelled) {
+                // Nobody is waiting for the result any more
+                if (response != null) {
+                    response.release();
+                }
+                throw new IOException("Cancelled " + mPath);
+            }
+
+            if (response != null) {
+                try {
+                    T result = parse(response);
+                    // Only a response that parsed replaces the cached one, so a bad body can't evict it
+                    mDiskCache.put(cacheKey, response);
+                    mFromNetwork = true;
+                    Log.d(TAG, mPath + " took " + (SystemClock.elapsedRealtime() - start) + "ms");
+                    return result;
+                } catch (JSONException e) {
+                    Log.e(TAG, "Error parsing " + mPath + ": " + e.getMessage());
+                } finally {
+                    response.release();
+                }
+            }
+
+            // If the request or its body failed fall back to the last response that didn't
+            HttpUtil.Response cached = mDiskCache.get(cacheKey);
+            if (cached == null) {
+                throw new IOException("No usable response for " + mPath);
+            }
+            try {
+                return parse(cached);
+            } finally {
+                cached.release();
+            }
+        }
+
+        T parse(HttpUtil.Response response) throws JSONException {
+            // Decode straight from the pooled bytes with the charset the server declared
+            return parse(new JSONObject(response.decode()).getJSONArray(OBJECTS));
+        }
+
+        abstract T parse(JSONArray objects) throws JSONException;
+    }
+
+    /**
+     * The items from a load, and whether the episodes came from the network or only from the disk cache
+     */
+    static class Result {
+        final List<Item> items;
+        final boolean fromNetwork;
+
+        Result(List<Item> items, boolean fromNetwork) {
+            this.items = items;
+            this.fromNetwork = fromNetwork;
+        }
+    }
+
+    /**
+     * Episodes along with the uid of the first image for each one, keyed by episode uid
+     */
+    private static class Episodes {
+        final List<Item> items = new ArrayList<>();
+        final Map<String, String> imageUids = new HashMap<>();
+    }
+
+    private class EpisodesRequest extends EndpointRequest<Episodes> {
+
+        EpisodesRequest(long deadline) {
+            super("episodes/", mEpisodeFields.toQuery(), deadline);
+        }
+
+        /**
+         * Scan the bytes directly when the charset allows it, so fields the server sent despite
+         * the projection are skipped without being built
+         */
+        @Override
+        Episodes parse(HttpUtil.Response response) throws JSONException {
+            if (!JsonScanner.canScan(response.getCharset())) {
+                return super.parse(response);
+            }
+
+            Episodes episodes = new Episodes();
+            SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_PATTERN, Locale.US);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+            JsonScanner scanner = new JsonScanner(response.getBody().bytes(), response.getBody().length());
+            scanner.beginObject();
+            while (scanner.hasNext()) {
+                if (scanner.nextName(RESPONSE_FIELDS) == null) {
+                    // e.g. the paging meta data
+                    scanner.skipValue();
+                    continue;
+                }
+                scanner.beginArray();
+                while (scanner.hasNext()) {
+                    if (scanner.nextIsObject()) {
+                        scanEpisode(scanner, episodes, dateFormat);
+                    } else {
+                        // e.g. a null in the list, there is no episode to read from it
+                        scanner.skipValue();
+                    }
+                }
+                scanner.endArray();
+            }
+            scanner.endObject();
+
+            // 0 skipped means the server honoured the projection and sent only the requested fields
+            Log.d(TAG, "Skipped " + scanner.getSkippedBytes() + " of "
+                    + response.getBody().length() + " bytes of episodes");
+            Log.d("Items: ", "# of items " + episodes.items.size());
+            return episodes;
+        }
+
+        private void scanEpisode(JsonScanner scanner, Episodes episodes, SimpleDateFormat dateFormat)
+                throws JSONException {
+            Item item = new Item();
+            String imageUid = null;
+
+            scanner.beginObject();
+            while (scanner.hasNext()) {
+                String field = scanner.nextName(mEpisodeFields);
+                // Values of an unexpected type are skipped, one odd field shouldn't lose the whole feed
+                if (UID.equals(field)) {
+                    item.setUid(scanner.optString());
+                } else if (TITLE.equals(field)) {
+                    item.setTitle(scanner.optString());
+                } else if (PUBLISH_ON.equals(field)) {
+                    item.setBroadcastDate(parseDate(dateFormat, scanner.optString()));
+                } else if (IMAGE_URLS.equals(field) && scanner.nextIsArray()) {
+                    // Only the first image is shown
+                    scanner.beginArray();
+                    if (scanner.hasNext()) {
+                        String imageUrl = scanner.optString();
+                        imageUid = imageUrl != null ? uidFromUrl(imageUrl) : null;
+                    }
+                    while (scanner.hasNext()) {
+                        scanner.skipValue();
+                    }
+                    scanner.endArray();
+                } else {
+                    scanner.skipValue();
+                }
+            }
+            scanner.endObject();
+
+            if (item.getUid() == null || item.getTitle() == null) {
+                Log.d(TAG, "Skipping episode without a uid or title");
+                return;
+            }
+            episodes.items.add(item);
+            if (imageUid != null) {
+                episodes.imageUids.put(item.getUid(), imageUid);
+            }
+        }
+
+        @Override
+        Episodes parse(JSONArray objects) throws JSONException {
+            Episodes episodes = new Episodes();
+
+            // SimpleDateFormat isn't thread safe so each parse gets its own
+            SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_PATTERN, Locale.US);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+            // Iterate through array and pull relevant fields from each JSONObject, skipping
+            // anything of an unexpected type the same way the scanner does
+            for (int currentItem = 0; currentItem < objects.length(); currentItem++) {
+                JSONObject episode = objects.optJSONObject(currentItem);
+                if (episode == null) {
+                    continue;
+                }
+
+                // store item info
+                Item item = new Item();
+                item.setUid(stringOrNull(episode.opt(UID)));
+                item.setTitle(stringOrNull(episode.opt(TITLE)));
+                item.setBroadcastDate(parseDate(dateFormat, stringOrNull(episode.opt(PUBLISH_ON))));
+                if (item.getUid() == null || item.getTitle() == null) {
+                    Log.d(TAG, "Skipping episode without a uid or title");
+                    continue;
+                }
+                episodes.items.add(item);
+
+                JSONArray imageUrls = episode.optJSONArray(IMAGE_URLS);
+                String imageUrl = imageUrls != null ? stringOrNull(imageUrls.opt(0)) : null;
+                if (imageUrl != null) {
+                    episodes.imageUids.put(item.getUid(), uidFromUrl(imageUrl));
+                }
+            }
+            Log.d("Items: ", "# of items " + episodes.items.size());
+            return episodes;
+        }
+    }
+
+    /**
+     * Maps each episode uid to the title of the set it belongs to
+     */
+    private class SetTitlesRequest extends EndpointRequest<Map<String, String>> {
+
+        SetTitlesRequest(long deadline) {
+            super("sets/", null, deadline);
+        }
+
+        @Override
+        Map<String, String> parse(JSONArray objects) throws JSONException {
+            Map<String, String> setTitles = new HashMap<>();
+            for (int currentSet = 0; currentSet < objects.length(); currentSet++) {
+                JSONObject set = objects.getJSONObject(currentSet);
+                JSONArray setItems = set.optJSONArray(SET_ITEMS);
+                if (setItems == null) {
+                    continue;
+                }
+                for (int currentItem = 0; currentItem < setItems.length(); currentItem++) {
+                    String contentUrl = setItems.getJSONObject(currentItem).optString(CONTENT_URL, null);
+                    if (contentUrl != null) {
+                        setTitles.put(uidFromUrl(contentUrl), set.optString(TITLE));
+                    }
+                }
+            }
+            return setTitles;
+        }
+    }
+
+    /**
+     * Maps each image uid to the url the image can be downloaded from
+     */
+    private class ImageUrlsRequest extends EndpointRequest<Map<String, String>> {
+
+        ImageUrlsRequest(long deadline) {
+            super("images/", null, deadline);
+        }
+
+        @Override
+        Map<String, String> parse(JSONArray objects) throws JSONException {
+            Map<String, String> imageUrls = new HashMap<>();
+            for (int currentImage = 0; currentImage < objects.length(); currentImage++) {
+                JSONObject image = objects.getJSONObject(currentImage);
+                imageUrls.put(image.getString(UID), image.getString(URL_FIELD));
+            }
+            return imageUrls;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import android.text.TextUtils;
+
+import java.nio.charset.Charset;
+
+/**
+ * The fields a screen needs from each object in a response. Sent to the API so it
+ * can leave the other fields out, and used by {@link JsonScanner} to skip them
+ * without building them when the API sends them anyway.
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+public class FieldProjection {
+
+    // Declared before the projections below, which need it when they are built
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Fields the episode list shows or sorts by
+    public static final FieldProjection EPISODE_LIST =
+            new FieldProjection("uid", "title", "image_urls", "publish_on");
+
+    private static final String QUERY_PARAMETER = "fields";
+
+    private final String[] mFields;
+    // UTF-8 bytes of each field so names in a response can be matched without decoding them
+    private final byte[][] mFieldBytes;
+
+    public FieldProjection(String... fields) {
+        this.mFields = fields;
+        this.mFieldBytes = new byte[fields.length][];
+        for (int field = 0; field < fields.length; field++) {
+            mFieldBytes[field] = fields[field].getBytes(UTF_8);
+        }
+    }
+
+    /**
+     * @return the query string asking the API for just these fields, e.g. "fields=uid,title"
+     */
+    public String toQuery() {
+        return QUERY_PARAMETER + "=" + TextUtils.join(",", mFields);
+    }
+
+    /**
+     * Match a field name held in raw bytes
+     *
+     * @return the matching field from this projection, or null if the name isn't one of the fields
+     */
+    String match(byte[] bytes, int start, int length) {
+        for (int field = 0; field < mFieldBytes.length; field++) {
+            byte[] fieldBytes = mFieldBytes[field];
+            if (fieldBytes.length != length) {
+                continue;
+            }
+            int index = 0;
+            while (index < length && fieldBytes[index] == bytes[start + index]) {
+                index++;
+            }
+            if (index == length) {
+                return mFields[field];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replaces a file in one step: the new contents are written to a temporary file next to it,
+ * synced to disk and then renamed over it, so readers only ever see the old or the new file.
+ * <p/>
+ * Each file has a single fixed temporary name, so a write cut short by the process dying
+ * leaves at most one stray file, which the next write of that file reuses. Writes of the
+ * same file are serialised so they can't share the temporary file.
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+class FileReplacer {
+
+    private static final String TAG = FileReplacer.class.getSimpleName();
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // One lock per file path, only a handful of files are ever written
+    private static final Map<String, Object> sLocks = new HashMap<>();
+
+    /**
+     * Writes the new contents of a file
+     */
+    interface Content {
+        void writeTo(DataOutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * @param file    - The file to replace, created if it doesn't exist yet
+     * @param content - Writes the new contents
+     * @return whether the file was replaced, if not it is left as it was
+     */
+    static boolean replace(File file, Content content) {
+        synchronized (lockFor(file)) {
+            File temp = new File(file.getPath() + TEMP_SUFFIX);
+            FileOutputStream fileStream = null;
+            try {
+                fileStream = new FileOutputStream(temp);
+                DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(fileStream));
+                content.writeTo(outputStream);
+                outputStream.flush();
+                // The data has to be on disk before the rename, or a crash could leave an empty file behind
+                fileStream.getFD().sync();
+                fileStream.close();
+                fileStream = null;
+
+                if (!temp.renameTo(file)) {
+                    Log.e(TAG, "Unable to replace " + file);
+                    return false;
+                }
+                return true;
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing " + file + ": " + e.getMessage());
+                return false;
+            } finally {
+                if (fileStream != null) {
+                    try {
+                        fileStream.close();
+                    } catch (IOException e) {
+                        Log.e(TAG, "Error closing stream " + e.getMessage());
+                    }
+                }
+                if (temp.exists() && !temp.delete()) {
+                    Log.e(TAG, "Unable to delete " + temp);
+                }
+            }
+        }
+    }
+
+    private static synchronized Object lockFor(File file) {
+        String path = file.getAbsolutePath();
+        Object lock = sLocks.get(path);
+        if (lock == null) {
+            lock = new Object();
+            sLocks.put(path, lock);
+        }
+        return lock;
+    }
+}
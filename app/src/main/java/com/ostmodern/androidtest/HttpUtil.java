@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+
+/**
+ * Http utility class for reading responses from the Skylark API
+ * into pooled buffers and working out how to decode them
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+public class HttpUtil {
+
+    // JSON is UTF-8 unless the server says otherwise
+    public static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+
+    private static final String CHARSET_PARAM = "charset=";
+
+    /**
+     * Open a GET request on the url, nothing is sent until {@link #read(HttpURLConnection, BufferPool)}
+     *
+     * @param url           - The url to request
+     * @param timeoutMillis - Limit on connecting and on each read, the platform default is to wait forever
+     * @return the connection, to be passed to {@link #read(HttpURLConnection, BufferPool)}
+     */
+    public static HttpURLConnection open(URL url, int timeoutMillis) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("GET");
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        return connection;
+    }
+
+    /**
+     * Send the request and read the whole body into a pooled buffer. Disconnecting the
+     * connection from another thread aborts a blocked read, which an interrupt can't.
+     *
+     * @param connection - A connection from {@link #open(URL, int)}, disconnected once read
+     * @param pool       - The pool the body is read into
+     * @return the response body, the caller must release it
+     */
+    public static Response read(HttpURLConnection connection, BufferPool pool) throws IOException {
+        InputStream inputStream = null;
+        try {
+            connection.connect();
+
+            inputStream = connection.getInputStream();
+            PooledBuffer body = PooledBuffer.readFully(inputStream, pool, connection.getContentLength());
+            return new Response(body, charsetFor(connection.getContentType()));
+        } finally {
+            // Ensure that regardless of outcome, the InputStream is closed and the connection disconnected
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException ignored) {
+                    // Nothing else to do, the body has already been read or has failed
+                }
+            }
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Pull the charset parameter out of a Content-Type header, e.g. "application/json; charset=ISO-8859-1"
+     *
+     * @param contentType - The Content-Type header value, may be null
+     * @return the declared charset, or UTF-8 if it is missing or not supported
+     */
+    public static Charset charsetFor(String contentType) {
+        if (contentType == null) {
+            return DEFAULT_CHARSET;
+        }
+        for (String param : contentType.split(";")) {
+            String trimmed = param.trim();
+            if (trimmed.regionMatches(true, 0, CHARSET_PARAM, 0, CHARSET_PARAM.length())) {
+                String name = trimmed.substring(CHARSET_PARAM.length()).replace("\"", "").trim();
+                try {
+                    return Charset.forName(name);
+                } catch (IllegalArgumentException e) {
+                    // Covers both illegal and unsupported charset names
+                    return DEFAULT_CHARSET;
+                }
+            }
+        }
+        return DEFAULT_CHARSET;
+    }
+
+    /**
+     * Body of a response along with the charset it should be decoded with
+     */
+    public static class Response {
+
+        private final PooledBuffer body;
+        private final Charset charset;
+
+        public Response(PooledBuffer body, Charset charset) {
+            this.body = body;
+            this.charset = charset;
+        }
+
+        public PooledBuffer getBody() {
+            return body;
+        }
+
+        public Charset getCharset() {
+            return charset;
+        }
+
+        public String decode() {
+            return body.decode(charset);
+        }
+
+        public void release() {
+            body.release();
+        }
+    }
+}
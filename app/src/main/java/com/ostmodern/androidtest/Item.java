@@ -29,6 +29,9 @@ public class Item implements Serializable {
     private String uid;
     private String title;
     private String tempImage;
+    private String series;
+    // Milliseconds since the epoch, 0 if the broadcast date isn't known
+    private long broadcastDate;
 
 
     public String getTitle() {
@@ -56,4 +59,32 @@ public class Item implements Serializable {
     public String getTempImage() {
         return tempImage;
     }
+
+    public void setSeries(String series) {
+        this.series = series;
+    }
+
+    public String getSeries() {
+        return series;
+    }
+
+    public void setBroadcastDate(long broadcastDate) {
+        this.broadcastDate = broadcastDate;
+    }
+
+    public long getBroadcastDate() {
+        return broadcastDate;
+    }
+
+    /**
+     * @return whether every field matches, i.e. a reload brought nothing new for this item
+     */
+    public boolean sameContentAs(Item other) {
+        return equal(uid, other.uid) && equal(title, other.title) && equal(tempImage, other.tempImage)
+                && equal(series, other.series) && broadcastDate == other.broadcastDate;
+    }
+
+    private static boolean equal(String lhs, String rhs) {
+        return lhs == null ? rhs == null : lhs.equals(rhs);
+    }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import android.util.SparseArray;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, ready to display list of items in a given order, along with
+ * the group headers that sit above the first item of each group
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+public class ItemSnapshot {
+
+    private final List<Item> items;
+    private final SparseArray<String> groupHeaders;
+
+    ItemSnapshot(List<Item> items, SparseArray<String> groupHeaders) {
+        this.items = Collections.unmodifiableList(items);
+        this.groupHeaders = groupHeaders;
+    }
+
+    /**
+     * Build a snapshot from items already in order, working out the group headers in one pass
+     */
+    static ItemSnapshot build(List<Item> orderedItems, SortMode sortMode) {
+        SparseArray<String> groupHeaders = new SparseArray<>();
+        if (sortMode.isGrouped()) {
+            Item previous = null;
+            for (int position = 0; position < orderedItems.size(); position++) {
+                Item current = orderedItems.get(position);
+                if (previous == null || !sortMode.sameGroup(previous, current)) {
+                    groupHeaders.append(position, sortMode.groupTitle(current));
+                }
+                previous = current;
+            }
+        }
+        return new ItemSnapshot(orderedItems, groupHeaders);
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the header to show above the item, empty for items with nothing to group by,
+     * or null if the item doesn't start a group
+     */
+    public String getGroupHeader(int position) {
+        return groupHeaders.get(position);
+    }
+}
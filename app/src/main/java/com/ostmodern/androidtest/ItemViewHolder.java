@@ -16,6 +16,7 @@
 package com.ostmodern.androidtest;
 
 import android.view.View;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 /**
@@ -24,14 +25,26 @@ import android.widget.TextView;
 public class ItemViewHolder {
 
     private final TextView txtTitle;
+    private final TextView txtGroupHeader;
+    private final ImageView imgItem;
 
     ItemViewHolder(View view) {
         // Use the View holder so we only call findViewById once.
         txtTitle = (TextView) view.findViewById(R.id.txt_item_title);
+        txtGroupHeader = (TextView) view.findViewById(R.id.txt_item_group_header);
+        imgItem = (ImageView) view.findViewById(R.id.img_item);
     }
 
     public TextView getTitle() {
         return txtTitle;
     }
 
+    public TextView getGroupHeader() {
+        return txtGroupHeader;
+    }
+
+    public ImageView getImage() {
+        return imgItem;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import org.json.JSONException;
+
+import java.nio.charset.Charset;
+
+/**
+ * Minimal pull parser that reads JSON straight from UTF-8 bytes.
+ * <p/>
+ * Unlike {@link org.json.JSONObject} nothing is built until it is asked for, so fields
+ * outside a {@link FieldProjection} are stepped over byte by byte without creating any
+ * strings or objects for them. The number of bytes stepped over is kept for reporting.
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+class JsonScanner {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final byte[] mBytes;
+    private final int mLimit;
+    private int mPosition;
+    private long mSkippedBytes;
+
+    /**
+     * @param bytes  - UTF-8 (or plain ASCII) encoded JSON
+     * @param length - Number of valid bytes at the start of the array
+     */
+    JsonScanner(byte[] bytes, int length) {
+        this.mBytes = bytes;
+        this.mLimit = length;
+    }
+
+    /**
+     * @return whether the bytes of the charset can be scanned directly
+     */
+    static boolean canScan(Charset charset) {
+        return UTF_8.equals(charset) || Charset.forName("US-ASCII").equals(charset);
+    }
+
+    /**
+     * @return the number of bytes stepped over by {@link #skipValue()} and unrequested names
+     */
+    long getSkippedBytes() {
+        return mSkippedBytes;
+    }
+
+    void beginObject() throws JSONException {
+        expect('{');
+    }
+
+    void endObject() throws JSONException {
+        expect('}');
+    }
+
+    void beginArray() throws JSONException {
+        expect('[');
+    }
+
+    void endArray() throws JSONException {
+        expect(']');
+    }
+
+    /**
+     * @return whether the current object or array has another element, consuming the comma before it
+     */
+    boolean hasNext() throws JSONException {
+        byte next = peek();
+        if (next == ',') {
+            mPosition++;
+            next = peek();
+        }
+        return next != '}' && next != ']';
+    }
+
+    /**
+     * Read the next name in an object along with its colon, without decoding it
+     *
+     * @return the matching field from the projection, or null if the value should be skipped
+     */
+    String nextName(FieldProjection projection) throws JSONException {
+        int start = mPosition;
+        expect('"');
+        int nameStart = mPosition;
+        int nameEnd = endOfString();
+        String field = projection.match(mBytes, nameStart, nameEnd - nameStart);
+        mPosition = nameEnd + 1;
+        expect(':');
+        if (field == null) {
+            mSkippedBytes += mPosition - start;
+        }
+        return field;
+    }
+
+    /**
+     * Consume the next value if it is the null literal
+     *
+     * @return whether the value was null
+     */
+    boolean nextNull() throws JSONException {
+        if (peek() != 'n') {
+            return false;
+        }
+        expectLiteral("null");
+        return true;
+    }
+
+    /**
+     * @return the next string value, or null if the value is the null literal
+     */
+    String nextString() throws JSONException {
+        if (nextNull()) {
+            return null;
+        }
+        expect('"');
+        int start = mPosition;
+        int end = endOfString();
+        mPosition = end + 1;
+        return decode(start, end);
+    }
+
+    /**
+     * Lenient counterpart of {@link #nextString()} for fields that should be a string but might not be
+     *
+     * @return the next string value, or null if the value is null or of another type, which is skipped
+     */
+    String optString() throws JSONException {
+        if (peek() != '"') {
+            skipValue();
+            return null;
+        }
+        return nextString();
+    }
+
+    /**
+     * @return whether the next value is an object, without consuming anything
+     */
+    boolean nextIsObject() throws JSONException {
+        return peek() == '{';
+    }
+
+    /**
+     * @return whether the next value is an array, without consuming anything
+     */
+    boolean nextIsArray() throws JSONException {
+        return peek() == '[';
+    }
+
+    /**
+     * Step over the next value, however deeply nested, without building any of it
+     */
+    void skipValue() throws JSONException {
+        int start = mPosition;
+        byte first = peek();
+        if (first == '"') {
+            mPosition++;
+            mPosition = endOfString() + 1;
+        } else if (first == '{' || first == '[') {
+            int depth = 0;
+            do {
+                if (mPosition >= mLimit) {
+                    throw new JSONException("Unterminated value at " + start);
+                }
+                byte current = mBytes[mPosition++];
+                if (current == '"') {
+                    mPosition = endOfString() + 1;
+                } else if (current == '{' || current == '[') {
+                    depth++;
+                } else if (current == '}' || current == ']') {
+                    depth--;
+                }
+            } while (depth > 0);
+        } else {
+            // Number, true, false or null, runs until the next delimiter
+            while (mPosition < mLimit && !isDelimiter(mBytes[mPosition])) {
+                mPosition++;
+            }
+        }
+        mSkippedBytes += mPosition - start;
+    }
+
+    // Position of the closing quote of the string the current position is inside
+    private int endOfString() throws JSONException {
+        for (int index = mPosition; index < mLimit; index++) {
+            if (mBytes[index] == '\\') {
+                index++;
+            } else if (mBytes[index] == '"') {
+                return index;
+            }
+        }
+        throw new JSONException("Unterminated string at " + mPosition);
+    }
+
+    // Decode the string between start and end, unescaping it only if it needs it
+    private String decode(int start, int end) throws JSONException {
+        int escape = start;
+        while (escape < end && mBytes[escape] != '\\') {
+            escape++;
+        }
+        if (escape == end) {
+            return new String(mBytes, start, end - start, UTF_8);
+        }
+
+        StringBuilder builder = new StringBuilder(end - start);
+        int segmentStart = start;
+        for (int index = escape; index < end; index++) {
+            if (mBytes[index] != '\\') {
+                continue;
+            }
+            builder.append(new String(mBytes, segmentStart, index - segmentStart, UTF_8));
+            byte escaped = mBytes[++index];
+            switch (escaped) {
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    if (index + 4 >= end) {
+                        throw new JSONException("Unterminated escape at " + index);
+                    }
+                    try {
+                        builder.append((char) Integer.parseInt(new String(mBytes, index + 1, 4, UTF_8), 16));
+                    } catch (NumberFormatException e) {
+                        throw new JSONException("Invalid escape at " + index);
+                    }
+                    index += 4;
+                    break;
+                default:
+                    // Quote, backslash and solidus stand for themselves
+                    builder.append((char) escaped);
+                    break;
+            }
+            segmentStart = index + 1;
+        }
+        builder.append(new String(mBytes, segmentStart, end - segmentStart, UTF_8));
+        return builder.toString();
+    }
+
+    // Next non whitespace byte, without consuming it
+    private byte peek() throws JSONException {
+        while (mPosition < mLimit && isWhitespace(mBytes[mPosition])) {
+            mPosition++;
+        }
+        if (mPosition >= mLimit) {
+            throw new JSONException("Unexpected end of input");
+        }
+        return mBytes[mPosition];
+    }
+
+    private void expect(char expected) throws JSONException {
+        if (peek() != expected) {
+            throw new JSONException("Expected " + expected + " at " + mPosition
+                    + " but was " + (char) mBytes[mPosition]);
+        }
+        mPosition++;
+    }
+
+    private void expectLiteral(String literal) throws JSONException {
+        for (int index = 0; index < literal.length(); index++) {
+            if (mPosition >= mLimit || mBytes[mPosition] != literal.charAt(index)) {
+                throw new JSONException("Expected " + literal + " at " + mPosition);
+            }
+            mPosition++;
+        }
+    }
+
+    private static boolean isWhitespace(byte value) {
+        return value == ' ' || value == '\n' || value == '\r' || value == '\t';
+    }
+
+    private static boolean isDelimiter(byte value) {
+        return value == ',' || value == '}' || value == ']' || isWhitespace(value);
+    }
+}
@@ -21,6 +21,8 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 
+import com.squareup.picasso.Picasso;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -35,6 +37,8 @@ class ListItemAdapter extends ArrayAdapter {
     private final Context mContext;
     // Initial lit of Items
     private List<Item> listOfItems = new ArrayList<>();
+    // Latest snapshot from the worker, null until the first one arrives
+    private ItemSnapshot mSnapshot;
 
     public ListItemAdapter(Context context, List objects) {
         super(context, R.layout.set_list_item, objects);
@@ -67,6 +71,22 @@ class ListItemAdapter extends ArrayAdapter {
         }
         itemViewHolder.getTitle().setText(currentItem.getTitle());
 
+        // Usually already in Picasso's cache, the row was prefetched before it scrolled into view
+        Picasso.with(mContext)
+                .load(currentItem.getTempImage())
+                .placeholder(android.R.color.darker_gray)
+                .into(itemViewHolder.getImage());
+
+        // Only the first item of a group shows the group header
+        String groupHeader = mSnapshot != null ? mSnapshot.getGroupHeader(position) : null;
+        if (groupHeader == null) {
+            itemViewHolder.getGroupHeader().setVisibility(View.GONE);
+        } else {
+            itemViewHolder.getGroupHeader().setVisibility(View.VISIBLE);
+            itemViewHolder.getGroupHeader().setText(groupHeader.isEmpty()
+                    ? mContext.getString(R.string.group_other) : groupHeader);
+        }
+
         return rowItem;
     }
 
@@ -87,15 +107,13 @@ class ListItemAdapter extends ArrayAdapter {
     }
 
     /**
-     * Add the items from the updated items to the list and notify any observers and refresh the changes
+     * Show a new snapshot of the items and notify any observers and refresh the changes
      *
-     * @param restoredItems - The list of items the adapter is to be updated with
+     * @param snapshot - The ordered items, along with their group headers, the adapter is to display
      */
-    public void addItemsToList(List<Item> restoredItems) {
-        if (restoredItems != null) {
-            listOfItems.clear();
-            listOfItems.addAll(restoredItems);
-            notifyDataSetChanged();
-        }
+    public void setSnapshot(ItemSnapshot snapshot) {
+        this.mSnapshot = snapshot;
+        this.listOfItems = snapshot.getItems();
+        notifyDataSetChanged();
     }
 }
@@ -42,6 +42,9 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
         Log.d(TAG, "onCreate");
 
+        // Keep the snapshot shown at startup fresh in the background
+        SyncService.schedule(this);
+
         if (savedInstanceState == null) {
             if (mPlaceholderFragment == null) {
                 // Activity starting first time
@@ -81,11 +84,9 @@ public class MainActivity extends AppCompatActivity {
         // Check to make sure the components are not null (set by onDetach)
         if (mPlaceholderFragment != null) {
             if (mPlaceholderFragment.mDownloadItemsTask != null) {
-                if (mPlaceholderFragment.mListItemAdapter != null) {
-                    // update the adapter
-                    Log.d("updating from activity", "# adapter items" + result.size());
-                    mPlaceholderFragment.mListItemAdapter.addItemsToList(result);
-                }
+                // update the items, the fragment passes them on to the adapter once they are in order
+                Log.d("updating from activity", "# adapter items" + result.size());
+                mPlaceholderFragment.onItemsLoaded(result);
             }
         }
     }
@@ -35,5 +35,10 @@ public class NetworkChangeReceiver extends BroadcastReceiver {
         String status = NetworkUtil.getConnectivityStatusString(context);
 
         Toast.makeText(context, status, Toast.LENGTH_LONG).show();
+
+        // Catch up on a missed sync as soon as an unmetered connection is available
+        if (NetworkUtil.isUnmetered(context)) {
+            SyncService.syncIfStale(context);
+        }
     }
 }
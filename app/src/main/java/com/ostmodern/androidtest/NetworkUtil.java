@@ -18,6 +18,7 @@ package com.ostmodern.androidtest;
 import android.content.Context;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.support.v4.net.ConnectivityManagerCompat;
 
 /**
  * Network Utility class that checks connectivity to
@@ -62,4 +63,14 @@ public class NetworkUtil {
         }
         return status;
     }
-}
\ No newline at end of file
+
+    // Check the active connection is up and not charged by the byte, e.g. Wifi rather than mobile data
+    public static boolean isUnmetered(Context context) {
+        ConnectivityManager connectivityManager = (ConnectivityManager) context
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected()
+                && !ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager);
+    }
+}
@@ -21,8 +21,12 @@ import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ListView;
@@ -38,7 +42,7 @@ import java.util.List;
  * @author michaelakakpo
  * @version 18/10/15.
  */
-public class PlaceholderFragment extends Fragment {
+public class PlaceholderFragment extends Fragment implements SortedItems.OnSnapshotListener {
 
     private final static String TAG = PlaceholderFragment.class.getSimpleName();
 
@@ -58,8 +62,18 @@ public class PlaceholderFragment extends Fragment {
 
     ListView mListView;
 
+    // Items in feed order as last loaded
     private final List<Item> listOfItems = new ArrayList<>();
 
+    // Keeps the items in the chosen order off the main thread
+    private SortedItems mSortedItems;
+    private SortMode mSortMode = SortMode.FEED;
+    private ItemSnapshot mItemSnapshot;
+
+    // Prefetches the rows about to scroll into view
+    private PrefetchPlanner mPrefetchPlanner;
+    private RowPrefetcher mRowPrefetcher;
+
     public PlaceholderFragment() {
     /* No args constructor */
     }
@@ -86,7 +100,8 @@ public class PlaceholderFragment extends Fragment {
      * Initiates a request for the list of items
      */
     public void beginTask() {
-        mDownloadItemsTask = new DownloadItemsTask(mCurrentActivity);
+        // Only block the list with a progress dialog if there is no snapshot to show meanwhile
+        mDownloadItemsTask = new DownloadItemsTask(mCurrentActivity, listOfItems.isEmpty());
         mDownloadItemsTask.execute();
     }
 
@@ -100,6 +115,14 @@ public class PlaceholderFragment extends Fragment {
 
         // Avoid creating and destroying Fragment every time configuration changes
         setRetainInstance(true);
+        setHasOptionsMenu(true);
+
+        // Show the last synced snapshot straight away rather than waiting on the network
+        listOfItems.addAll(new SnapshotStore(getContext()).read());
+        Log.d(TAG, "Loaded " + listOfItems.size() + " items from snapshot");
+
+        mSortedItems = new SortedItems(this);
+        mSortedItems.replaceItems(new ArrayList<>(listOfItems));
     }
 
     /**
@@ -115,10 +138,17 @@ public class PlaceholderFragment extends Fragment {
 
         mListView = (ListView) rootView.findViewById(R.id.list);
 
-        // Initialise and set the adapter
-        mListItemAdapter = new ListItemAdapter(getContext(), listOfItems);
+        // Initialise and set the adapter, with its own copy as listOfItems changes on every load
+        mListItemAdapter = new ListItemAdapter(getContext(), new ArrayList<>(listOfItems));
+        if (mItemSnapshot != null) {
+            mListItemAdapter.setSnapshot(mItemSnapshot);
+        }
         mListView.setAdapter(mListItemAdapter);
 
+        mRowPrefetcher = new RowPrefetcher(getContext(), mListItemAdapter);
+        mPrefetchPlanner = new PrefetchPlanner(mRowPrefetcher);
+        mListView.setOnScrollListener(mPrefetchPlanner);
+
         return rootView;
     }
 
@@ -154,6 +184,118 @@ public class PlaceholderFragment extends Fragment {
         super.onResume();
     }
 
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
+        inflater.inflate(R.menu.menu_sort, menu);
+        menu.findItem(menuItemFor(mSortMode)).setChecked(true);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        SortMode sortMode = sortModeFor(item.getItemId());
+        if (sortMode == null) {
+            return super.onOptionsItemSelected(item);
+        }
+        item.setChecked(true);
+        if (sortMode != mSortMode) {
+            mSortMode = sortMode;
+            mSortedItems.setSortMode(sortMode);
+        }
+        return true;
+    }
+
+    private static SortMode sortModeFor(int menuItemId) {
+        switch (menuItemId) {
+            case R.id.action_sort_feed:
+                return SortMode.FEED;
+            case R.id.action_sort_title:
+                return SortMode.TITLE;
+            case R.id.action_sort_series:
+                return SortMode.SERIES;
+            case R.id.action_sort_broadcast_date:
+                return SortMode.BROADCAST_DATE;
+            default:
+                return null;
+        }
+    }
+
+    private static int menuItemFor(SortMode sortMode) {
+        switch (sortMode) {
+            case TITLE:
+                return R.id.action_sort_title;
+            case SERIES:
+                return R.id.action_sort_series;
+            case BROADCAST_DATE:
+                return R.id.action_sort_broadcast_date;
+            default:
+                return R.id.action_sort_feed;
+        }
+    }
+
+    /**
+     * Pass newly loaded items on to be put in order
+     *
+     * @param items - The items returned from the server, an empty list means the load failed
+     *              so the items already shown are kept
+     */
+    public void onItemsLoaded(List<Item> items) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        List<Item> changed = changedItems(listOfItems, items);
+        listOfItems.clear();
+        listOfItems.addAll(items);
+        if (changed == null) {
+            mSortedItems.replaceItems(items);
+        } else if (!changed.isEmpty()) {
+            mSortedItems.addItems(changed);
+        }
+    }
+
+    /**
+     * When a reload keeps the items already shown in the same order and only appends to them,
+     * only the new and edited items need to be put in order
+     *
+     * @return the new and edited items, or null if items were dropped or moved and everything has to be replaced
+     */
+    private static List<Item> changedItems(List<Item> previous, List<Item> items) {
+        if (items.size() < previous.size()) {
+            return null;
+        }
+        List<Item> changed = new ArrayList<>();
+        for (int index = 0; index < items.size(); index++) {
+            Item item = items.get(index);
+            if (index >= previous.size()) {
+                changed.add(item);
+            } else if (!TextUtils.equals(previous.get(index).getUid(), item.getUid())) {
+                return null;
+            } else if (!previous.get(index).sameContentAs(item)) {
+                changed.add(item);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void onSnapshot(ItemSnapshot snapshot) {
+        // Kept so a recreated view can show it straight away
+        mItemSnapshot = snapshot;
+        if (mListItemAdapter != null) {
+            // The planned positions refer to the old order
+            mPrefetchPlanner.reset();
+            mListItemAdapter.setSnapshot(snapshot);
+        }
+    }
+
     /**
      * Checks if there is network connection present and then attempt to load items if there is
      */
@@ -164,14 +306,35 @@ public class PlaceholderFragment extends Fragment {
         if (networkInfo != null && networkInfo.isConnected()) {
             // Asynchronously load the sets (not blocking the main thread)
             beginTask();
-        } else {
+        } else if (listOfItems.isEmpty()) {
             // let user know the connection is not available
             mTextViewNetworkMessage.setVisibility(View.VISIBLE);
             mTextViewNetworkMessage.setText(R.string.network_no_connection_message);
             Log.d(TAG, "No network connection available()");
+        } else {
+            Log.d(TAG, "No network connection available, showing snapshot");
         }
     }
 
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mPrefetchPlanner.reset();
+        mListItemAdapter = null;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        mSortedItems.shutdown();
+    }
+
     /**
      * @inheritDoc
      */
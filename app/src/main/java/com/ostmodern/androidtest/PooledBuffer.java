@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Growable byte buffer backed by {@link BufferPool}. Holds a whole response body
+ * so it can be decoded once, or written to disk, without intermediate copies.
+ * <p/>
+ * Call {@link #release()} once finished so the backing array goes back to the pool.
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+public class PooledBuffer {
+
+    private static final int INITIAL_SIZE = 16 * 1024;
+
+    // Expected lengths above this aren't trusted to size the buffer, it grows from the initial size instead
+    private static final int MAX_EXPECTED_LENGTH = 32 * 1024 * 1024;
+
+    private final BufferPool mPool;
+    private byte[] mBytes;
+    private int mLength;
+
+    public PooledBuffer(BufferPool pool) {
+        this(pool, INITIAL_SIZE);
+    }
+
+    public PooledBuffer(BufferPool pool, int initialSize) {
+        this.mPool = pool;
+        this.mBytes = pool.acquire(initialSize);
+    }
+
+    /**
+     * Read the stream to the end into a new pooled buffer
+     *
+     * @param inputStream - The stream to drain, left open for the caller to close
+     * @param pool        - The pool the backing arrays are taken from
+     * @return the buffer holding every byte of the stream
+     */
+    public static PooledBuffer readFully(InputStream inputStream, BufferPool pool) throws IOException {
+        return readFully(inputStream, pool, -1);
+    }
+
+    /**
+     * Read the stream to the end into a new pooled buffer sized for the expected length up front,
+     * so a large body is read straight into one array rather than grown and copied along the way
+     *
+     * @param expectedLength - e.g. the Content-Length, or -1 if it isn't known
+     */
+    public static PooledBuffer readFully(InputStream inputStream, BufferPool pool, int expectedLength)
+            throws IOException {
+        // One spare byte so the end of the stream is seen without growing a buffer that is exactly full,
+        // and a bogus length can't make it reserve more than a sane body up front
+        int initialSize = expectedLength > 0 && expectedLength < MAX_EXPECTED_LENGTH
+                ? expectedLength + 1 : INITIAL_SIZE;
+        PooledBuffer buffer = new PooledBuffer(pool, initialSize);
+        try {
+            int read;
+            while ((read = inputStream.read(buffer.mBytes, buffer.mLength,
+                    buffer.mBytes.length - buffer.mLength)) != -1) {
+                buffer.mLength += read;
+                if (buffer.mLength == buffer.mBytes.length) {
+                    buffer.grow();
+                }
+            }
+        } catch (IOException e) {
+            buffer.release();
+            throw e;
+        }
+        return buffer;
+    }
+
+    // Swap the backing array for a bigger one from the pool and hand the old one back
+    private void grow() {
+        byte[] bigger = mPool.acquire(mBytes.length * 2);
+        System.arraycopy(mBytes, 0, bigger, 0, mLength);
+        mPool.release(mBytes);
+        mBytes = bigger;
+    }
+
+    /**
+     * @return the backing array, only the first {@link #length()} bytes are valid
+     */
+    public byte[] bytes() {
+        return mBytes;
+    }
+
+    public int length() {
+        return mLength;
+    }
+
+    /**
+     * Decode the contents in a single pass
+     *
+     * @param charset - The charset the bytes were encoded with
+     */
+    public String decode(Charset charset) {
+        return new String(mBytes, 0, mLength, charset);
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(mBytes, 0, mLength);
+    }
+
+    /**
+     * Give the backing array back to the pool, the buffer must not be used afterwards
+     */
+    public void release() {
+        if (mBytes != null) {
+            mPool.release(mBytes);
+            mBytes = null;
+            mLength = 0;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import android.os.SystemClock;
+import android.view.View;
+import android.widget.AbsListView;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Watches the list scroll and predicts which rows will be on screen in the next
+ * few hundred milliseconds, so their data can be fetched before they are shown.
+ * <p/>
+ * When scrolling slowly the rows just past the edge the list is moving towards are
+ * prefetched. During a fast fling the rows in between would only fly past, so only the
+ * rows around where the fling is predicted to land are prefetched. Rows that drop out
+ * of the prediction are cancelled.
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+public class PrefetchPlanner implements AbsListView.OnScrollListener {
+
+    /**
+     * Does the actual fetching, calls are made on the main thread in priority order
+     */
+    public interface Target {
+
+        /**
+         * @param rank - 0 for the most urgent row, counting up from there
+         */
+        void prefetchImage(int position, int rank);
+
+        void cancel(int position);
+    }
+
+    // How far ahead the scroll is predicted
+    private static final long PREDICTION_HORIZON_MS = 300;
+
+    // Rows per millisecond above which the list is treated as flinging, i.e. 20 rows a second
+    private static final float FLING_VELOCITY = 0.02f;
+
+    // Weight of the newest sample in the smoothed velocity
+    private static final float SMOOTHING = 0.5f;
+
+    // Rows prefetched past the edge even when scrolling slowly or stopped
+    private static final int MIN_LOOKAHEAD = 3;
+
+    // Upper bound on rows prefetched at once, so a wild prediction can't flood the network
+    private static final int MAX_PREFETCH = 20;
+
+    private final Target mTarget;
+
+    // Positions currently prefetched or being prefetched
+    private final Set<Integer> mPlanned = new HashSet<>();
+
+    // Smoothed scroll velocity in rows per millisecond, positive when scrolling down the list
+    private float mVelocity;
+    private float mLastPosition;
+    private long mLastTime;
+
+    public PrefetchPlanner(Target target) {
+        this.mTarget = target;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+        if (scrollState == SCROLL_STATE_IDLE) {
+            // Stopped, so prefetch around what is on screen rather than ahead of it
+            mVelocity = 0;
+            mLastTime = 0;
+            plan(view.getFirstVisiblePosition(), view.getChildCount(), view.getCount());
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        if (visibleItemCount == 0) {
+            return;
+        }
+
+        // Include how far the first row is scrolled off the top, whole rows are too coarse for velocity
+        float position = firstVisibleItem;
+        View firstChild = view.getChildAt(0);
+        if (firstChild != null && firstChild.getHeight() > 0) {
+            position -= firstChild.getTop() / (float) firstChild.getHeight();
+        }
+
+        long now = SystemClock.uptimeMillis();
+        if (mLastTime != 0 && now > mLastTime) {
+            float velocity = (position - mLastPosition) / (now - mLastTime);
+            mVelocity += SMOOTHING * (velocity - mVelocity);
+        }
+        mLastPosition = position;
+        mLastTime = now;
+
+        plan(firstVisibleItem, visibleItemCount, totalItemCount);
+    }
+
+    /**
+     * Forget the plan, e.g. when the adapter is given new items and the positions no longer match
+     */
+    public void reset() {
+        for (int position : mPlanned) {
+            mTarget.cancel(position);
+        }
+        mPlanned.clear();
+    }
+
+    private void plan(int firstVisible, int visibleCount, int totalCount) {
+        List<Integer> predicted = predict(firstVisible, visibleCount, totalCount);
+
+        // Cancel whatever has fallen out of the prediction
+        Set<Integer> stillPredicted = new HashSet<>(predicted);
+        for (Integer position : new ArrayList<>(mPlanned)) {
+            if (!stillPredicted.contains(position)) {
+                mTarget.cancel(position);
+                mPlanned.remove(position);
+            }
+        }
+
+        List<Integer> added = new ArrayList<>();
+        for (Integer position : predicted) {
+            if (mPlanned.add(position)) {
+                added.add(position);
+            }
+        }
+        for (int rank = 0; rank < added.size(); rank++) {
+            mTarget.prefetchImage(added.get(rank), rank);
+        }
+    }
+
+    // Off screen positions expected to be shown within the horizon, most urgent first
+    private List<Integer> predict(int firstVisible, int visibleCount, int totalCount) {
+        int lastVisible = firstVisible + visibleCount - 1;
+        int rowsAhead = Math.round(Math.abs(mVelocity) * PREDICTION_HORIZON_MS);
+        List<Integer> predicted = new ArrayList<>();
+
+        if (Math.abs(mVelocity) >= FLING_VELOCITY) {
+            // Flinging, skip the rows that will fly past and prefetch a screen's worth where it lands
+            int landing = mVelocity > 0 ? lastVisible + rowsAhead : firstVisible - rowsAhead;
+            for (int offset = 0; predicted.size() < Math.min(visibleCount, MAX_PREFETCH)
+                    && offset <= visibleCount; offset++) {
+                addIfOffScreen(predicted, landing + offset, firstVisible, lastVisible, totalCount);
+                if (offset > 0) {
+                    addIfOffScreen(predicted, landing - offset, firstVisible, lastVisible, totalCount);
+                }
+            }
+        } else if (mVelocity != 0) {
+            // Scrolling slowly, prefetch the rows coming in from the edge the list is moving towards
+            int direction = mVelocity > 0 ? 1 : -1;
+            int edge = direction > 0 ? lastVisible : firstVisible;
+            int count = Math.min(Math.max(rowsAhead, MIN_LOOKAHEAD), MAX_PREFETCH);
+            for (int offset = 1; offset <= count; offset++) {
+                addIfOffScreen(predicted, edge + direction * offset, firstVisible, lastVisible, totalCount);
+            }
+        } else {
+            // Stopped, either way is equally likely
+            for (int offset = 1; offset <= MIN_LOOKAHEAD; offset++) {
+                addIfOffScreen(predicted, lastVisible + offset, firstVisible, lastVisible, totalCount);
+                addIfOffScreen(predicted, firstVisible - offset, firstVisible, lastVisible, totalCount);
+            }
+        }
+        return predicted;
+    }
+
+    private static void addIfOffScreen(List<Integer> predicted, int position,
+                                       int firstVisible, int lastVisible, int totalCount) {
+        if (position >= 0 && position < totalCount && (position < firstVisible || position > lastVisible)) {
+            predicted.add(position);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.util.SparseArray;
+
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Target;
+
+/**
+ * Prefetches the images of the rows {@link PrefetchPlanner} predicts will be shown next
+ * into Picasso's cache, so they are ready when the row is bound
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+public class RowPrefetcher implements PrefetchPlanner.Target {
+
+    // Rows ranked below this are about to be shown so their images jump the queue
+    private static final int URGENT_RANK = 3;
+
+    private final Context mContext;
+    private final ListItemAdapter mAdapter;
+
+    // Picasso only holds targets weakly and only cancels requests that have one,
+    // so keep the target of each in flight prefetch here until it finishes or is cancelled
+    private final SparseArray<ImageTarget> mImageTargets = new SparseArray<>();
+
+    public RowPrefetcher(Context context, ListItemAdapter adapter) {
+        this.mContext = context.getApplicationContext();
+        this.mAdapter = adapter;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void prefetchImage(int position, int rank) {
+        Item item = mAdapter.getItem(position);
+        if (item.getTempImage() == null) {
+            return;
+        }
+        ImageTarget target = new ImageTarget(position);
+        mImageTargets.put(position, target);
+        Picasso.with(mContext)
+                .load(item.getTempImage())
+                .priority(rank < URGENT_RANK ? Picasso.Priority.HIGH : Picasso.Priority.NORMAL)
+                .into(target);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void cancel(int position) {
+        ImageTarget target = mImageTargets.get(position);
+        if (target != null) {
+            Picasso.with(mContext).cancelRequest(target);
+            mImageTargets.remove(position);
+        }
+    }
+
+    /**
+     * Receives a prefetched image, which by then is in Picasso's memory cache for the row to use
+     */
+    private class ImageTarget implements Target {
+
+        private final int mPosition;
+
+        ImageTarget(int position) {
+            this.mPosition = position;
+        }
+
+        @Override
+        public void onBitmapLoaded(Bitmap bitmap, Picasso.LoadedFrom from) {
+            finished();
+        }
+
+        @Override
+        public void onBitmapFailed(Drawable errorDrawable) {
+            finished();
+        }
+
+        @Override
+        public void onPrepareLoad(Drawable placeHolderDrawable) {
+        }
+
+        // Only forget this target if the position hasn't been prefetched again since
+        private void finished() {
+            if (mImageTargets.get(mPosition) == this) {
+                mImageTargets.remove(mPosition);
+            }
+        }
+    }
+}
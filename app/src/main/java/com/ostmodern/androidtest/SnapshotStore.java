@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores the last loaded list of items as a ready to render snapshot,
+ * so the list can be shown at startup without waiting on the network
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+public class SnapshotStore {
+
+    private static final String TAG = SnapshotStore.class.getSimpleName();
+
+    private static final String SNAPSHOT_FILE = "episodes.snapshot";
+
+    private static final int MAGIC = 0x4F535353;
+    private static final int VERSION = 1;
+
+    // A corrupt count can't make the list reserve more than this up front
+    private static final int MAX_INITIAL_CAPACITY = 4096;
+    // Far longer than any title or url, a longer string means the file is corrupt
+    private static final int MAX_STRING_BYTES = 64 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mFile;
+
+    public SnapshotStore(Context context) {
+        this.mFile = new File(context.getFilesDir(), SNAPSHOT_FILE);
+    }
+
+    /**
+     * @return how long ago the snapshot was written in milliseconds, or Long.MAX_VALUE if there is none
+     */
+    public long getAge() {
+        if (!mFile.exists()) {
+            return Long.MAX_VALUE;
+        }
+        return System.currentTimeMillis() - mFile.lastModified();
+    }
+
+    /**
+     * Read the snapshot, a flat record per item so it is cheap enough to read on the main thread at startup
+     *
+     * @return the items in the snapshot, or an empty list if there isn't a usable one
+     */
+    public List<Item> read() {
+        if (!mFile.exists()) {
+            return new ArrayList<>();
+        }
+        DataInputStream inputStream = null;
+        try {
+            inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+                // e.g. written by an older version of the app, the next load replaces it
+                throw new IOException("Not a snapshot");
+            }
+            int count = inputStream.readInt();
+            List<Item> items = new ArrayList<>(Math.max(0, Math.min(count, MAX_INITIAL_CAPACITY)));
+            for (int index = 0; index < count; index++) {
+                Item item = new Item();
+                item.setUid(readString(inputStream));
+                item.setTitle(readString(inputStream));
+                item.setSeries(readString(inputStream));
+                item.setTempImage(readString(inputStream));
+                item.setBroadcastDate(inputStream.readLong());
+                items.add(item);
+            }
+            return items;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading snapshot: " + e.getMessage());
+            return new ArrayList<>();
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Error closing stream " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace the snapshot with the given items in one step, so a reader never sees half a snapshot
+     *
+     * @param items - The items to store, an empty list leaves the current snapshot in place
+     */
+    public void write(final List<Item> items) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        FileReplacer.replace(mFile, new FileReplacer.Content() {
+            @Override
+            public void writeTo(DataOutputStream outputStream) throws IOException {
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(VERSION);
+                outputStream.writeInt(items.size());
+                for (Item item : items) {
+                    writeString(outputStream, item.getUid());
+                    writeString(outputStream, item.getTitle());
+                    writeString(outputStream, item.getSeries());
+                    writeString(outputStream, item.getTempImage());
+                    outputStream.writeLong(item.getBroadcastDate());
+                }
+            }
+        });
+    }
+
+    // Length prefixed UTF-8 with -1 for null, unlike writeUTF it has no 64K limit
+    private static void writeString(DataOutputStream outputStream, String value) throws IOException {
+        if (value == null) {
+            outputStream.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    private static String readString(DataInputStream inputStream) throws IOException {
+        int length = inputStream.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_STRING_BYTES) {
+            throw new IOException("Corrupt string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        inputStream.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
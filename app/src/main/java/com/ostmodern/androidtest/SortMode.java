@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import java.text.DateFormat;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * The orders the list of items can be shown in, and how each one groups them
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+public enum SortMode {
+
+    // Raw feed order, not grouped
+    FEED(null),
+
+    // Alphabetical by title, not grouped
+    TITLE(new Comparator<Item>() {
+        @Override
+        public int compare(Item lhs, Item rhs) {
+            return compareText(lhs.getTitle(), rhs.getTitle());
+        }
+    }),
+
+    // Grouped by series, alphabetical by title within each series
+    SERIES(new Comparator<Item>() {
+        @Override
+        public int compare(Item lhs, Item rhs) {
+            int bySeries = compareText(lhs.getSeries(), rhs.getSeries());
+            return bySeries != 0 ? bySeries : compareText(lhs.getTitle(), rhs.getTitle());
+        }
+    }) {
+        @Override
+        public boolean isGrouped() {
+            return true;
+        }
+
+        @Override
+        public boolean sameGroup(Item lhs, Item rhs) {
+            return compareText(lhs.getSeries(), rhs.getSeries()) == 0;
+        }
+
+        @Override
+        public String groupTitle(Item item) {
+            return item.getSeries() == null ? "" : item.getSeries();
+        }
+    },
+
+    // Grouped by the day of broadcast, newest first
+    BROADCAST_DATE(new Comparator<Item>() {
+        @Override
+        public int compare(Item lhs, Item rhs) {
+            // Unknown dates are 0 so they end up last
+            if (lhs.getBroadcastDate() != rhs.getBroadcastDate()) {
+                return lhs.getBroadcastDate() > rhs.getBroadcastDate() ? -1 : 1;
+            }
+            return compareText(lhs.getTitle(), rhs.getTitle());
+        }
+    }) {
+        private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+        @Override
+        public boolean isGrouped() {
+            return true;
+        }
+
+        @Override
+        public boolean sameGroup(Item lhs, Item rhs) {
+            return day(lhs.getBroadcastDate()) == day(rhs.getBroadcastDate());
+        }
+
+        @Override
+        public String groupTitle(Item item) {
+            if (item.getBroadcastDate() == 0) {
+                return "";
+            }
+            return DateFormat.getDateInstance(DateFormat.MEDIUM).format(new Date(item.getBroadcastDate()));
+        }
+
+        // Day number in the local time zone, so groups line up with the dates shown
+        private long day(long millis) {
+            if (millis == 0) {
+                return Long.MIN_VALUE;
+            }
+            return (millis + TimeZone.getDefault().getOffset(millis)) / DAY_MILLIS;
+        }
+    };
+
+    private final Comparator<Item> mComparator;
+
+    SortMode(Comparator<Item> comparator) {
+        this.mComparator = comparator;
+    }
+
+    /**
+     * @return the order the items are kept in, ties broken by uid so no two items compare equal,
+     * or null for the raw feed order
+     */
+    public Comparator<Item> comparator() {
+        if (mComparator == null) {
+            return null;
+        }
+        return new Comparator<Item>() {
+            @Override
+            public int compare(Item lhs, Item rhs) {
+                int result = mComparator.compare(lhs, rhs);
+                return result != 0 ? result : compareText(lhs.getUid(), rhs.getUid());
+            }
+        };
+    }
+
+    public boolean isGrouped() {
+        return false;
+    }
+
+    /**
+     * @return whether two neighbouring items belong under the same group header
+     */
+    public boolean sameGroup(Item lhs, Item rhs) {
+        return true;
+    }
+
+    /**
+     * @return the text for the header above a group, empty if the items have nothing to group by
+     */
+    public String groupTitle(Item item) {
+        return "";
+    }
+
+    // Case insensitive comparison with missing text sorted last
+    private static int compareText(String lhs, String rhs) {
+        if (lhs == null || rhs == null) {
+            return lhs == null ? (rhs == null ? 0 : 1) : -1;
+        }
+        return String.CASE_INSENSITIVE_ORDER.compare(lhs, rhs);
+    }
+}
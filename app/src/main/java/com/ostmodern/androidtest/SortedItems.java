@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the items in the current {@link SortMode} order on a worker thread.
+ * <p/>
+ * Items are kept in an ordered set, so a page or delta only costs a log(n) insert per
+ * item rather than re-sorting the whole list. Once the queued changes have been applied
+ * a ready to display {@link ItemSnapshot} is handed to the listener on the main thread.
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+public class SortedItems {
+
+    /**
+     * Receives each new snapshot on the main thread
+     */
+    public interface OnSnapshotListener {
+        void onSnapshot(ItemSnapshot snapshot);
+    }
+
+    // Single worker so the collections below are only ever touched by one thread
+    private final ExecutorService mWorker = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final OnSnapshotListener mListener;
+
+    // Changes queued but not applied yet, a snapshot is only published once they are all in
+    private final AtomicInteger mPendingChanges = new AtomicInteger();
+
+    // Items by uid in feed order, used for the feed order and to find the entry a delta replaces
+    private final Map<String, Item> mFeedOrder = new LinkedHashMap<>();
+
+    // Items in the current sort order, null when showing the feed order. An entry may be an
+    // older instance with the same sort keys, mFeedOrder always holds the latest one.
+    private TreeSet<Item> mSorted;
+    private Comparator<Item> mComparator;
+    private SortMode mSortMode = SortMode.FEED;
+
+    public SortedItems(OnSnapshotListener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * Add a page of items or a delta, replacing any items already held with the same uid
+     */
+    public void addItems(final List<Item> items) {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                for (Item item : items) {
+                    upsert(item);
+                }
+            }
+        });
+    }
+
+    /**
+     * Replace every item, e.g. after a full reload. Items missing from the new list are dropped.
+     */
+    public void replaceItems(final List<Item> items) {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                Map<String, Item> previous = new HashMap<>(mFeedOrder);
+                mFeedOrder.clear();
+                for (Item item : items) {
+                    // A uid repeated within the list replaces its earlier entry rather than the previous one
+                    Item old = mFeedOrder.put(item.getUid(), item);
+                    if (old == null) {
+                        old = previous.remove(item.getUid());
+                    }
+                    resort(old, item);
+                }
+                // Whatever is left wasn't in the new list
+                if (mSorted != null) {
+                    for (Item removed : previous.values()) {
+                        mSorted.remove(removed);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Switch to another order, the only change that has to sort every item
+     */
+    public void setSortMode(final SortMode sortMode) {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                mSortMode = sortMode;
+                mComparator = sortMode.comparator();
+                if (mComparator == null) {
+                    mSorted = null;
+                } else {
+                    mSorted = new TreeSet<>(mComparator);
+                    mSorted.addAll(mFeedOrder.values());
+                }
+            }
+        });
+    }
+
+    public void shutdown() {
+        mWorker.shutdownNow();
+    }
+
+    // Must be called on the worker
+    private void upsert(Item item) {
+        resort(mFeedOrder.put(item.getUid(), item), item);
+    }
+
+    // Move the item to its place in the sort order, must be called on the worker
+    private void resort(Item old, Item item) {
+        if (mSorted == null) {
+            return;
+        }
+        if (old != null) {
+            if (mComparator.compare(old, item) == 0) {
+                // Same uid and sort keys, it stays where it is
+                return;
+            }
+            mSorted.remove(old);
+        }
+        mSorted.add(item);
+    }
+
+    private void submit(final Runnable change) {
+        mPendingChanges.incrementAndGet();
+        mWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                change.run();
+                // Skip publishing while more changes are queued, the last one publishes for all of them
+                if (mPendingChanges.decrementAndGet() == 0) {
+                    publish();
+                }
+            }
+        });
+    }
+
+    private void publish() {
+        List<Item> ordered;
+        if (mSorted == null) {
+            ordered = new ArrayList<>(mFeedOrder.values());
+        } else {
+            // Take each item from mFeedOrder so unmoved items still show their latest content
+            ordered = new ArrayList<>(mSorted.size());
+            for (Item item : mSorted) {
+                ordered.add(mFeedOrder.get(item.getUid()));
+            }
+        }
+        final ItemSnapshot snapshot = ItemSnapshot.build(ordered, mSortMode);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mListener.onSnapshot(snapshot);
+            }
+        });
+    }
+}
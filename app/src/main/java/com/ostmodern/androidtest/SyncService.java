@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ostmodern.androidtest;
+
+import android.app.AlarmManager;
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Background service that periodically refreshes the episode feed and writes
+ * the snapshot {@link PlaceholderFragment} shows at startup
+ *
+ * @author michaelakakpo
+ * @version 19/10/15.
+ */
+public class SyncService extends IntentService {
+
+    private static final String TAG = SyncService.class.getSimpleName();
+
+    // How often the feed is refreshed, a snapshot younger than this is left alone
+    static final long SYNC_INTERVAL = AlarmManager.INTERVAL_HOUR;
+
+    public SyncService() {
+        super(TAG);
+    }
+
+    /**
+     * Schedule the periodic sync unless it is already scheduled. The alarm is inexact and doesn't
+     * wake the device, so it is batched with other work and only runs while the device is already awake.
+     * <p/>
+     * Rescheduling would push the first run back by a whole interval, so an app opened or rotated
+     * at least once an interval would never sync.
+     *
+     * @param context - Any context, only used to reach the AlarmManager
+     */
+    public static void schedule(Context context) {
+        Intent intent = new Intent(context, SyncService.class);
+        if (PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_NO_CREATE) != null) {
+            return;
+        }
+        PendingIntent pendingIntent = PendingIntent.getService(context, 0, intent, 0);
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + SYNC_INTERVAL, SYNC_INTERVAL, pendingIntent);
+    }
+
+    /**
+     * Start a sync straight away if the snapshot is out of date, e.g. when the device joins Wifi
+     */
+    public static void syncIfStale(Context context) {
+        if (new SnapshotStore(context).getAge() >= SYNC_INTERVAL) {
+            context.startService(new Intent(context, SyncService.class));
+        }
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        // Only sync on unmetered connections so the background refresh doesn't cost the user data
+        if (!NetworkUtil.isUnmetered(this)) {
+            Log.d(TAG, "Skipping sync, no unmetered connection");
+            return;
+        }
+
+        DiskCache diskCache = new DiskCache(getCacheDir(), BufferPool.getInstance());
+        FeedLoader.Result result = new FeedLoader(diskCache, FieldProjection.EPISODE_LIST).load();
+        if (!result.fromNetwork) {
+            // Rewriting the snapshot from the cache would reset its age and delay the next catch up sync
+            Log.d(TAG, "Sync failed, keeping the current snapshot");
+            return;
+        }
+        new SnapshotStore(this).write(result.items);
+        EpisodeIndex.write(this, result.items);
+        Log.d(TAG, "Synced " + result.items.size() + " items");
+    }
+}